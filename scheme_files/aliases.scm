@@ -54,6 +54,7 @@
 (define-alias Reminder io.mindspice.toastit.notification.Reminder)
 (define-alias Editor io.mindspice.toastit.util.Editor)
 (define-alias SearchResult io.mindspice.toastit.entries.SearchResult)
+(define-alias SearchHit io.mindspice.toastit.sqlite.SearchHit)
 (define-alias CalendarEvents io.mindspice.toastit.entries.CalendarEvents)
 (define-alias App io.mindspice.toastit.App)
 (define-alias Settings io.mindspice.toastit.util.Settings)
@@ -75,6 +76,9 @@
 (define-alias EntryType io.mindspice.toastit.enums.EntryType)
 (define-alias NotificationLevel io.mindspice.toastit.enums.NotificationLevel)
 (define-alias NotificationType io.mindspice.toastit.enums.NotificationType)
+(define-alias SearchBackend io.mindspice.toastit.enums.SearchBackend)
+(define-alias FsyncPolicy io.mindspice.toastit.enums.FsyncPolicy)
+(define-alias EntryFileFormat io.mindspice.toastit.enums.EntryFileFormat)
 (define-alias EntryType io.mindspice.toastit.enums.EntryType)
 
 
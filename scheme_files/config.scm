@@ -15,13 +15,50 @@
 (define (load-app-settings)
   (begin
     (set-static Settings 'EXEC_THREADS 1)
+    ; Task/project saves are written in the background this long after they are made, saves to the same entry
+    ; in between are written once. Pending saves are written on exit, 0 writes every save before returning
+    (set-static Settings 'WRITE_BEHIND_DELAY_MS 500)
+    ; Entry files are written to a temp file and renamed over the old one. NONE leaves flushing to the OS,
+    ; FILE forces the contents to disk first, DIRECTORY also forces the rename (survives power loss)
+    (set-static Settings 'FILE_FSYNC_POLICY (FsyncPolicy:.FILE))
+    ; Task/project/note meta files are written as JSON (readable, editable) or BINARY (compact, faster to load).
+    ; Both are always read, existing files are converted when their entry is next saved
+    (set-static Settings 'ENTRY_FILE_FORMAT (EntryFileFormat:.JSON))
     (set-static Settings 'DATE_INPUT_PATTERNS (List[JString]:of "MM/dd/yy"))
     (set-static Settings `TIME_INPUT_PATTERNS (List[JString]:of "HH:mm" "H:mm" "h:mm a" "h:mma"))
     (set-static Settings `DATE_TIME_FULL_PATTERN "EEEE, MMM dd, yyyy '@' HH:mm")
     (set-static Settings `DATE_TIME_SHORT_PATTERN "EEEE, MMM dd '@' HH:mm")
     ; Use virtual threads for searchs, more efficent if searching many large files
     (set-static Settings `THREADED_SEARCH #t)
-    (set-static Settings `SEARCH_TIMEOUT_SEC 60)
+    (set-static Settings `SEARCH_CONCURRENCY 8) ; Files read at once by a threaded search
+    (set-static Settings `SEARCH_TIMEOUT_SEC 60) ; Deadline for a whole search, results found by then are kept
+    (set-static Settings `SEARCH_MAX_RESULTS 1000) ; Matching lines kept per search, files stop being read after
+    ; SCAN reads every note/journal file per search, FTS answers from a sqlite full text index that is
+    ; updated when entries are saved (ranked, matches whole words and word prefixes rather than any substring),
+    ; INDEX keeps an in memory word index built at startup and returns matching lines like SCAN ("phrase", word*)
+    (set-static Settings 'TEXT_SEARCH_BACKEND (SearchBackend:.SCAN))
+    ; Search indexes are updated on save, this also catches note/journal files edited outside the shell
+    (set-static Settings `SEARCH_INDEX_SYNC_INV_MIN 5)
+    ))
+
+
+(define (load-database-settings)
+  (begin
+    ; Connections are shared by the manager refresh jobs and the shell, each caches its prepared statements
+    (set-static Settings 'DATABASE_POOL_SIZE 4)
+    (set-static Settings 'DATABASE_ACQUIRE_TIMEOUT_MS 10000)
+    ; Startup profile applied to every connection. WAL lets the shell read while a refresh job writes,
+    ; NORMAL sync only fsyncs at checkpoints in WAL mode (a crash can lose the last commits, never corrupt)
+    (set-static Settings 'DATABASE_JOURNAL_MODE "WAL") ; DELETE for sqlite default rollback journal
+    (set-static Settings 'DATABASE_SYNCHRONOUS "NORMAL") ; OFF, NORMAL, FULL, EXTRA
+    (set-static Settings 'DATABASE_MMAP_SIZE_MB 64) ; 0 to disable memory mapped reads
+    (set-static Settings 'DATABASE_CACHE_SIZE_KB 8192)
+    (set-static Settings 'DATABASE_TEMP_STORE "MEMORY") ; DEFAULT, FILE, MEMORY
+    (set-static Settings 'DATABASE_BUSY_TIMEOUT_MS 5000)
+    ; Keep the full task/project/note records in the database as well as the meta files, refreshes then
+    ; load from one query instead of opening every meta file. Existing meta files are imported on startup
+    (set-static Settings 'DATABASE_STORE_BODIES #f)
+    (set-static Settings 'DATABASE_TASK_CACHE_SIZE 1000) ; Tasks kept in memory for projects, least recently used go first
     ))
 
 
@@ -82,6 +119,8 @@
 (define (load-event-settings)
   (begin
     (set-static Settings `EVENT_LOOK_FORWARD_DAYS -1) ; Set to -1 for all
+    (set-static Settings `EVENT_PAST_WINDOW_DAYS 7) ; Past events loaded on refresh, -1 for all
+    (set-static Settings `EVENT_PAST_PAGE_SIZE 50) ; Older past events loaded per "more past"
     (set-static Settings `EVENT_REFRESH_INV_MIN 240)
     (set-static Settings `EVENT_NOTIFY_FADE_TIME_SEC (* 60 60))
     ))
@@ -100,6 +139,7 @@
     (load-app-settings)
     (load-global-table-settings)
     (load-file-paths)
+    (load-database-settings)
     (load-calendar-settings)
     (load-shell-settings)
     (load-event-settings)
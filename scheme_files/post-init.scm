@@ -37,6 +37,17 @@
     (lambda ()
       (run-process shell: #t out-to: (ShellInstance:getOutput) (apply list cmd args)))))
 
+;; Search every entry type, returns a list of SearchHit (type, name, snippet), best match first
+(define (search-all query ::String)
+  ((AppInstance:getGlobalSearch):search query))
+
+;; Task/project saves queued by the write-behind managers that are not written yet, flush-writes writes them now
+(define (pending-writes)
+  (AppInstance:getPendingWrites))
+
+(define (flush-writes)
+  (AppInstance:flushPendingWrites))
+
 (define (editor-consumer cmd . args)
   (KConsumer:of
     (lambda (path ::Path)
@@ -491,6 +491,26 @@
       205 205)
     ))
 
+(define global-search-table
+  (List:of
+    (TableUtil:createColumn
+      (JString "Type")
+      (KFunction[SearchHit JString]
+        (lambda (hit ::SearchHit) (JString (hit:type))))
+      8 8)
+    (TableUtil:createColumn
+      (JString "Name")
+      (KFunction[SearchHit JString]
+        (lambda (hit ::SearchHit) (JString (TableUtil:truncateString (hit:name)))))
+      40 40)
+    (TableUtil:createColumn
+      (JString "Match")
+      (KFunction[SearchHit JString]
+        (lambda (hit ::SearchHit)
+          (JString (TableUtil:wrapString (hit:snippet) 150))))
+      155 155)
+    ))
+
 (define todo-view-table
   (List:of
     (TableUtil:createColumn
@@ -511,6 +531,7 @@
     (set-static TableConfig `NOTE_TABLE note-table)
     (set-static TableConfig `REMINDER_TABLE reminder-table)
     (set-static TableConfig `SEARCH_VIEW_TABLE search-view-table)
+    (set-static TableConfig `GLOBAL_SEARCH_TABLE global-search-table)
     (set-static TableConfig `TODO_VIEW_TABLE todo-view-table)
     ))
 
@@ -1,28 +1,33 @@
 package io.mindspice.toastit;
 
+import io.mindspice.toastit.calendar.CalendarIndex;
 import io.mindspice.toastit.entries.CalendarEvents;
 import io.mindspice.toastit.entries.DatedEntry;
+import io.mindspice.toastit.entries.GlobalSearch;
 import io.mindspice.toastit.entries.TodoManager;
 import io.mindspice.toastit.entries.project.ProjectManager;
 import io.mindspice.toastit.entries.task.TaskManager;
 import io.mindspice.toastit.entries.text.TextManager;
 import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.notification.NotificationScheduler;
 import io.mindspice.toastit.sqlite.DBConnection;
 import io.mindspice.toastit.entries.event.EventManager;
 import io.mindspice.kawautils.wrappers.KawaInstance;
 import io.mindspice.toastit.shell.ApplicationShell;
+import io.mindspice.toastit.util.DurableWriter;
 import io.mindspice.toastit.util.Settings;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 
 public class App implements CalendarEvents {
@@ -32,6 +37,7 @@ public class App implements CalendarEvents {
     private ApplicationShell shell;
     private DBConnection dbConnection;
     private ScheduledExecutorService exec;
+    private NotificationScheduler notificationScheduler;
 
     //Managers
     private EventManager eventManager;
@@ -40,14 +46,12 @@ public class App implements CalendarEvents {
     private TextManager noteManager;
     private TextManager journalManager;
     private TodoManager todoManager;
+    private GlobalSearch globalSearch;
+    private CalendarIndex calendarIndex;
 
-    public BiFunction<LocalDate, Function<DatedEntry, String>, List<String>> calendarEventProvider = (date, func) -> {
-        var eventList = new ArrayList<String>();
-        eventList.addAll(eventManager.getCalendarEvents(date, func));
-        eventList.addAll(projectManager.getCalendarEvents(date, func));
-        eventList.addAll(taskManager.getCalendarEvents(date, func));
-        return eventList;
-    };
+    // Called per calendar cell, served from the month index so a calendar render loads each month once
+    public BiFunction<LocalDate, Function<DatedEntry, String>, List<String>> calendarEventProvider = (date, func) ->
+            calendarIndex.entriesOn(date).stream().map(func).toList();
 
     static {
         try {
@@ -80,7 +84,9 @@ public class App implements CalendarEvents {
 
         scheme.defineObject("AppInstance", this);
 
+        removeOrphanedTempFiles();
         exec = Executors.newScheduledThreadPool(Settings.EXEC_THREADS);
+        notificationScheduler = new NotificationScheduler(exec);
         eventManager = new EventManager();
         taskManager = new TaskManager();
         projectManager = new ProjectManager();
@@ -94,6 +100,10 @@ public class App implements CalendarEvents {
         projectManager.init();
         noteManager.init(EntryType.NOTE);
         journalManager.init(EntryType.JOURNAL);
+        calendarIndex = new CalendarIndex(List.of(eventManager, projectManager, taskManager));
+        globalSearch = new GlobalSearch(dbConnection);
+        globalSearch.init();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushPendingWrites, "write-behind-flush"));
 
         var loadResult = scheme.loadSchemeFile(new File("scheme_files/post-init.scm"));
         if (!loadResult.valid()) {
@@ -103,6 +113,20 @@ public class App implements CalendarEvents {
         return INSTANCE;
     }
 
+    // Before any entry is written, a failure is only reported
+    private void removeOrphanedTempFiles() {
+        for (EntryType type : EntryType.values()) {
+            try {
+                int removed = DurableWriter.removeOrphanedTempFiles(Path.of(Settings.ROOT_PATH, type.name()));
+                if (removed > 0) {
+                    System.out.printf("Removed %d unfinished %s file write(s)%n", removed, type.name().toLowerCase());
+                }
+            } catch (IOException e) {
+                System.err.println("Error removing unfinished file writes: " + e.getMessage());
+            }
+        }
+    }
+
     public DBConnection getDatabase() {
         return dbConnection;
     }
@@ -111,6 +135,10 @@ public class App implements CalendarEvents {
         return exec;
     }
 
+    public NotificationScheduler getNotificationScheduler() {
+        return notificationScheduler;
+    }
+
     public ApplicationShell getShell() {
         return shell;
     }
@@ -139,9 +167,46 @@ public class App implements CalendarEvents {
         return todoManager;
     }
 
+    public GlobalSearch getGlobalSearch() {
+        return globalSearch;
+    }
+
+    public CalendarIndex getCalendarIndex() {
+        return calendarIndex;
+    }
+
+    // Saves queued by the write-behind managers that are not yet in the database/on disk
+    public int getPendingWrites() {
+        return taskManager.writes.depth() + projectManager.writes.depth();
+    }
+
+    public void flushPendingWrites() {
+        int pending = getPendingWrites();
+        if (pending == 0) { return; }
+        System.out.println("Writing " + pending + " pending entries");
+        try {
+            projectManager.writes.flush(); // Flushes the task writes first
+            taskManager.writes.flush();
+        } catch (IOException e) {
+            System.err.println("Failed to write pending entries: " + e.getMessage());
+        }
+    }
+
 
     @Override
     public List<String> getCalendarEvents(LocalDate date, Function<DatedEntry, String> dataMapper) {
         return calendarEventProvider.apply(date, dataMapper);
     }
+
+    @Override
+    public List<DatedEntry> getCalendarEntries(LocalDate from, LocalDate to) {
+        return Stream.of(eventManager, projectManager, taskManager)
+                .<DatedEntry>flatMap(manager -> manager.getCalendarEntries(from, to).stream())
+                .toList();
+    }
+
+    @Override
+    public long calendarVersion() {
+        return eventManager.calendarVersion() + projectManager.calendarVersion() + taskManager.calendarVersion();
+    }
 }
@@ -0,0 +1,70 @@
+package io.mindspice.toastit.calendar;
+
+import io.mindspice.toastit.entries.CalendarEvents;
+import io.mindspice.toastit.entries.DatedEntry;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+// Calendar entries of one month bucketed by day, so rendering a month is one getCalendarEntries call per source
+// instead of one per cell. Days list the sources in order. The month is rebuilt when another month is asked for or
+// any source's calendarVersion changed since it was built, only a month built with no change in between is cached.
+public class CalendarIndex {
+    private final List<CalendarEvents> sources;
+    private volatile MonthIndex month = null;
+
+    private record MonthIndex(YearMonth yearMonth, long version, Map<LocalDate, List<DatedEntry>> days) { }
+
+    public CalendarIndex(List<CalendarEvents> sources) {
+        this.sources = List.copyOf(sources);
+    }
+
+    public List<DatedEntry> entriesOn(LocalDate date) {
+        return monthIndex(YearMonth.from(date)).days.getOrDefault(date, List.of());
+    }
+
+    public Map<LocalDate, List<DatedEntry>> month(YearMonth yearMonth) {
+        return monthIndex(yearMonth).days;
+    }
+
+    // Forces a rebuild on the next lookup, for changes made around the sources
+    public void invalidate() {
+        month = null;
+    }
+
+    private long version() {
+        long version = 0;
+        for (CalendarEvents source : sources) {
+            version += source.calendarVersion(); // Versions only grow, so any change changes the sum
+        }
+        return version;
+    }
+
+    private MonthIndex monthIndex(YearMonth yearMonth) {
+        MonthIndex current = month;
+        long currentVersion = version();
+        if (current != null && current.version == currentVersion && current.yearMonth.equals(yearMonth)) {
+            return current;
+        }
+        LocalDate from = yearMonth.atDay(1);
+        LocalDate to = yearMonth.plusMonths(1).atDay(1);
+        Map<LocalDate, List<DatedEntry>> days = new HashMap<>();
+        for (CalendarEvents source : sources) {
+            for (DatedEntry entry : source.getCalendarEntries(from, to)) {
+                days.computeIfAbsent(entry.dueBy().toLocalDate(), day -> new ArrayList<>()).add(entry);
+            }
+        }
+        days.replaceAll((day, entries) -> Collections.unmodifiableList(entries));
+        MonthIndex built = new MonthIndex(yearMonth, currentVersion, Collections.unmodifiableMap(days));
+        if (version() == currentVersion) {
+            month = built;
+        }
+        return built;
+    }
+}
@@ -1,12 +1,19 @@
 package io.mindspice.toastit.entries;
 
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.function.Function;
 
 
 public interface CalendarEvents {
-   List<String> getCalendarEvents(LocalDate date, Function<DatedEntry, String> dataMapper);
+   default List<String> getCalendarEvents(LocalDate date, Function<DatedEntry, String> dataMapper) {
+      return getCalendarEntries(date, date.plusDays(1)).stream().map(dataMapper).toList();
+   }
 
+   // Entries shown on the calendar for the days from (inclusive) to to (exclusive) in order, each on the day of its
+   // dueBy(). Lets a calendar load a whole month with one call instead of one per day
+   List<? extends DatedEntry> getCalendarEntries(LocalDate from, LocalDate to);
+
+   // Changes whenever getCalendarEntries may return something different, for caches of its results
+   long calendarVersion();
 }
@@ -0,0 +1,292 @@
+package io.mindspice.toastit.entries;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+
+// Concurrent store for the manager's in memory entries: hash index by uuid plus a skip list ordered by the
+// entry's time (due by, start time, created at), uuid breaks ties. Writes take a lock so the two indexes
+// never disagree, reads don't lock. Exposed as a read only List in sorted order for the shell and tables,
+// indexed access is served from an array snapshot that is rebuilt on the first read after a write, only a
+// snapshot taken with no write in between is cached. Stores given an end time also answer overlap queries from an
+// interval tree built the same way.
+public class EntryStore<T extends Entry> extends AbstractList<T> implements RandomAccess {
+    private static final UUID MIN_UUID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    private final Function<T, LocalDateTime> timeKey;
+    private final Function<T, LocalDateTime> endKey;
+    private final Map<UUID, T> byUUID = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<SortKey, T> sorted = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile long version = 0;
+    private volatile Snapshot snapshot = null;
+    private volatile IntervalTree intervalTree = null;
+
+    private record Snapshot(long version, Object[] items) { }
+
+    // Implicit search tree over the sorted entries, the node for [lo, hi) is mid = (lo + hi) / 2 and maxEnds[mid]
+    // is the latest end in that range, so overlap queries skip every subtree that ends before the range starts
+    private record IntervalTree(long version, Object[] items, LocalDateTime[] starts, LocalDateTime[] ends,
+                                LocalDateTime[] maxEnds) { }
+
+    private record SortKey(LocalDateTime time, UUID uuid) implements Comparable<SortKey> {
+        @Override
+        public int compareTo(SortKey other) {
+            int cmp = time.compareTo(other.time);
+            return cmp != 0 ? cmp : uuid.compareTo(other.uuid);
+        }
+    }
+
+    public EntryStore(Function<T, LocalDateTime> timeKey) {
+        this(timeKey, timeKey);
+    }
+
+    // endKey is when an entry ends for overlapping(), null ends are taken as the entry's time
+    public EntryStore(Function<T, LocalDateTime> timeKey, Function<T, LocalDateTime> endKey) {
+        this.timeKey = timeKey;
+        this.endKey = endKey;
+    }
+
+    private SortKey keyOf(T entry) {
+        LocalDateTime time = timeKey.apply(entry);
+        return new SortKey(time == null ? LocalDateTime.MAX : time, entry.uuid());
+    }
+
+    // Inserts or replaces the entry with the same uuid, returns the replaced entry or null
+    public T put(T entry) {
+        writeLock.lock();
+        try {
+            T previous = byUUID.put(entry.uuid(), entry);
+            if (previous != null) {
+                sorted.remove(keyOf(previous));
+            }
+            sorted.put(keyOf(entry), entry);
+            version++;
+            return previous;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void putAll(Collection<? extends T> entries) {
+        writeLock.lock();
+        try {
+            entries.forEach(this::put);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Swaps the whole contents under one write lock, used by the full reloads
+    public void replaceAll(Collection<? extends T> entries) {
+        writeLock.lock();
+        try {
+            byUUID.clear();
+            sorted.clear();
+            putAll(entries);
+            version++;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public T remove(UUID uuid) {
+        writeLock.lock();
+        try {
+            T removed = byUUID.remove(uuid);
+            if (removed != null) {
+                sorted.remove(keyOf(removed));
+                version++;
+            }
+            return removed;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public T get(UUID uuid) {
+        return byUUID.get(uuid);
+    }
+
+    // Incremented by every write
+    public long version() {
+        return version;
+    }
+
+    public boolean containsUUID(UUID uuid) {
+        return byUUID.containsKey(uuid);
+    }
+
+    // Entries with from <= time < to, in order
+    public List<T> between(LocalDateTime from, LocalDateTime to) {
+        return List.copyOf(sorted.subMap(new SortKey(from, MIN_UUID), new SortKey(to, MIN_UUID)).values());
+    }
+
+    public List<T> before(LocalDateTime time) {
+        return List.copyOf(sorted.headMap(new SortKey(time, MIN_UUID)).values());
+    }
+
+    public List<T> from(LocalDateTime time) {
+        return List.copyOf(sorted.tailMap(new SortKey(time, MIN_UUID)).values());
+    }
+
+    // Entries overlapping from <= t < to, i.e. starting before to and ending after from, in order. Zero length
+    // entries overlap when their time is in the range.
+    public List<T> overlapping(LocalDateTime from, LocalDateTime to) {
+        IntervalTree tree = intervalTree();
+        List<T> overlaps = new ArrayList<>();
+        collectOverlaps(tree, 0, tree.items.length, from, to, overlaps);
+        return Collections.unmodifiableList(overlaps);
+    }
+
+    public Optional<T> first() {
+        var first = sorted.firstEntry();
+        return first == null ? Optional.empty() : Optional.of(first.getValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collectOverlaps(IntervalTree tree, int lo, int hi, LocalDateTime from, LocalDateTime to,
+            List<T> overlaps) {
+        if (lo >= hi) { return; }
+        int mid = (lo + hi) >>> 1;
+        if (tree.maxEnds[mid].isBefore(from)) { return; } // Everything in [lo, hi) ended before the range
+        collectOverlaps(tree, lo, mid, from, to, overlaps);
+        if (!tree.starts[mid].isBefore(to)) { return; } // Sorted by start, mid and everything after start too late
+        if (tree.ends[mid].isAfter(from) || !tree.starts[mid].isBefore(from)) {
+            overlaps.add((T) tree.items[mid]);
+        }
+        collectOverlaps(tree, mid + 1, hi, from, to, overlaps);
+    }
+
+    @SuppressWarnings("unchecked")
+    private IntervalTree intervalTree() {
+        IntervalTree current = intervalTree;
+        long currentVersion = version;
+        if (current != null && current.version == currentVersion) {
+            return current;
+        }
+        Object[] items = sorted.values().toArray();
+        LocalDateTime[] starts = new LocalDateTime[items.length];
+        LocalDateTime[] ends = new LocalDateTime[items.length];
+        for (int i = 0; i < items.length; ++i) {
+            T entry = (T) items[i];
+            starts[i] = keyOf(entry).time();
+            LocalDateTime end = endKey.apply(entry);
+            ends[i] = end == null || end.isBefore(starts[i]) ? starts[i] : end;
+        }
+        LocalDateTime[] maxEnds = new LocalDateTime[items.length];
+        fillMaxEnds(ends, maxEnds, 0, items.length);
+        IntervalTree built = new IntervalTree(currentVersion, items, starts, ends, maxEnds);
+        if (version == currentVersion) {
+            intervalTree = built;
+        }
+        return built;
+    }
+
+    private static LocalDateTime fillMaxEnds(LocalDateTime[] ends, LocalDateTime[] maxEnds, int lo, int hi) {
+        if (lo >= hi) { return LocalDateTime.MIN; }
+        int mid = (lo + hi) >>> 1;
+        LocalDateTime max = ends[mid];
+        LocalDateTime left = fillMaxEnds(ends, maxEnds, lo, mid);
+        LocalDateTime right = fillMaxEnds(ends, maxEnds, mid + 1, hi);
+        if (left.isAfter(max)) { max = left; }
+        if (right.isAfter(max)) { max = right; }
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    // List
+
+    private Object[] snapshot() {
+        Snapshot current = snapshot;
+        long currentVersion = version;
+        if (current != null && current.version == currentVersion) {
+            return current.items;
+        }
+        Object[] items = sorted.values().toArray();
+        if (version == currentVersion) {
+            snapshot = new Snapshot(currentVersion, items);
+        }
+        return items;
+    }
+
+    // The entries at one point in time, index loops over the store should go through this. get(int) and size()
+    // each read the current snapshot, a write between the two calls can move or drop the index.
+    @SuppressWarnings("unchecked")
+    public List<T> snapshotList() {
+        return (List<T>) (List<?>) Collections.unmodifiableList(Arrays.asList(snapshot()));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) snapshot()[index];
+    }
+
+    @Override
+    public int size() {
+        return snapshot().length;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot().clone();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<T> iterator() {
+        return ((List<T>) (List<?>) Arrays.asList(snapshot())).iterator();
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliterator(snapshot(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    @Override
+    public boolean add(T entry) {
+        put(entry);
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> entries) {
+        putAll(entries);
+        return !entries.isEmpty();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Entry entry && remove(entry.uuid()) != null;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        writeLock.lock();
+        try {
+            List<UUID> matched = byUUID.values().stream().filter(filter).map(Entry::uuid).toList();
+            matched.forEach(this::remove);
+            return !matched.isEmpty();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        writeLock.lock();
+        try {
+            byUUID.clear();
+            sorted.clear();
+            version++;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.mindspice.toastit.entries;
+
+import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.sqlite.DBConnection;
+import io.mindspice.toastit.sqlite.SearchHit;
+import io.mindspice.toastit.util.Settings;
+
+import java.io.IOException;
+import java.util.List;
+
+
+// Search across every entry type (task/subtask text, projects, events, notes, journals) from the one sqlite full text
+// index. Tasks, projects and events are indexed by the database upserts, notes and journals by their TextManager,
+// archived entries are skipped. Hits are typed, best match first, at most SEARCH_MAX_RESULTS.
+public class GlobalSearch {
+    private final DBConnection db;
+
+    public GlobalSearch(DBConnection db) {
+        this.db = db;
+    }
+
+    // Indexes entries written before the index covered them
+    public void init() {
+        try {
+            int indexed = db.indexUnindexedEntries();
+            if (indexed > 0) {
+                System.out.println("Indexed " + indexed + " entries for search");
+            }
+        } catch (IOException e) {
+            System.err.println("Error building search index: " + e.getMessage());
+        }
+    }
+
+    public List<SearchHit> search(String input) throws IOException {
+        String matchQuery = DBConnection.toMatchQuery(input);
+        return matchQuery == null ? List.of() : db.searchAll(matchQuery, Settings.SEARCH_MAX_RESULTS);
+    }
+
+    public List<SearchHit> search(String input, EntryType type) throws IOException {
+        String matchQuery = DBConnection.toMatchQuery(input);
+        return matchQuery == null ? List.of() : db.searchText(type, matchQuery, Settings.SEARCH_MAX_RESULTS);
+    }
+}
@@ -1,5 +1,6 @@
 package io.mindspice.toastit.entries;
 
+import io.mindspice.toastit.util.DurableWriter;
 import io.mindspice.toastit.util.JSON;
 import io.mindspice.toastit.util.Settings;
 
@@ -26,7 +27,7 @@ public class TodoManager {
     }
 
     public void flushToDisk() throws IOException {
-        Files.writeString(todoFile, JSON.writePretty(todoItems));
+        DurableWriter.writeString(todoFile, JSON.writePretty(todoItems));
     }
 
     public void addItem(String item) {
@@ -0,0 +1,98 @@
+package io.mindspice.toastit.entries;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+
+// Write-behind persistence for entry saves. put() records the latest version of an entry and returns, saves to the
+// same uuid before the next flush are coalesced into the last one. flush() writes everything pending as the entry
+// files (forced per FILE_FSYNC_POLICY) followed by one batched sql upsert, so a row is never in the database before
+// the file it describes. It runs every delayMs on the executor and should also be called on shutdown. A failed
+// flush puts its entries back (unless a newer version was queued meanwhile) for the next run, rewriting the files.
+// With a delay <= 0 every put is written through before it returns.
+public class WriteBehind<T extends Entry> {
+    private final BatchWriter<T> sqlWriter;
+    private final Consumer<T> fileWriter;
+    private final Map<UUID, T> pending = new LinkedHashMap<>(); // Guarded by this
+    private final Object flushLock = new Object(); // Held while a batch is being written
+    private volatile boolean writeThrough = false;
+
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+        void write(List<T> entries) throws IOException;
+    }
+
+    public WriteBehind(BatchWriter<T> sqlWriter, Consumer<T> fileWriter) {
+        this.sqlWriter = sqlWriter;
+        this.fileWriter = fileWriter;
+    }
+
+    public void start(ScheduledExecutorService exec, long delayMs) {
+        if (delayMs <= 0) {
+            writeThrough = true;
+            return;
+        }
+        exec.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                System.err.printf("Failed to write %d pending entries, retrying: %s%n", depth(), e.getMessage());
+            }
+        }, delayMs, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void put(T entry) throws IOException {
+        synchronized (this) {
+            pending.put(entry.uuid(), entry);
+        }
+        if (writeThrough) { flush(); }
+    }
+
+    public void putAll(List<T> entries) throws IOException {
+        synchronized (this) {
+            entries.forEach(entry -> pending.put(entry.uuid(), entry));
+        }
+        if (writeThrough) { flush(); }
+    }
+
+    // Drops a pending save, waiting out a flush already writing it, so a delete that follows is not undone
+    public void discard(UUID uuid) {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pending.remove(uuid);
+            }
+        }
+    }
+
+    // Entries saved but not yet written
+    public synchronized int depth() {
+        return pending.size();
+    }
+
+    // Writes everything pending and returns once it is written
+    public void flush() throws IOException {
+        synchronized (flushLock) {
+            List<T> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) { return; }
+                batch = List.copyOf(pending.values());
+                pending.clear();
+            }
+            try {
+                batch.forEach(fileWriter);
+                sqlWriter.write(batch);
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    batch.forEach(entry -> pending.putIfAbsent(entry.uuid(), entry));
+                }
+                throw e instanceof IOException io ? io : new IOException(e);
+            }
+        }
+    }
+}
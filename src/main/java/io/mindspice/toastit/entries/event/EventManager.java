@@ -3,8 +3,9 @@ package io.mindspice.toastit.entries.event;
 import io.mindspice.toastit.App;
 import io.mindspice.mindlib.data.tuples.Pair;
 import io.mindspice.toastit.entries.CalendarEvents;
-import io.mindspice.toastit.entries.DatedEntry;
+import io.mindspice.toastit.entries.EntryStore;
 import io.mindspice.toastit.entries.task.TaskEntry;
+import io.mindspice.toastit.notification.NotificationScheduler;
 import io.mindspice.toastit.notification.Notify;
 import io.mindspice.toastit.notification.Reminder;
 import io.mindspice.toastit.notification.ScheduledNotification;
@@ -19,18 +20,26 @@ import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 
+// Events are loaded for a window, from EVENT_PAST_WINDOW_DAYS back to EVENT_LOOK_FORWARD_DAYS ahead, by an indexed
+// range query on refresh. Past events older than the window are paged in on demand by loadMorePastEvents.
 public class EventManager implements CalendarEvents {
-    public List<ScheduledNotification> scheduledNotifications = new CopyOnWriteArrayList<>();
-    public final List<EventEntry> pastEvents = new CopyOnWriteArrayList<>();
-    public final List<EventEntry> futureEvents = new CopyOnWriteArrayList<>();
+    public final EntryStore<EventEntry> pastEvents = new EntryStore<>(EventEntry::startTime);
+    public final EntryStore<EventEntry> futureEvents = new EntryStore<>(EventEntry::startTime, EventEntry::endTime);
     public final ScheduledExecutorService exec = App.instance().getExec();
+    public final NotificationScheduler notificationScheduler = App.instance().getNotificationScheduler();
     public volatile long lastEventReCalc = Instant.now().getEpochSecond();
+    private final AtomicLong calendarChanges = new AtomicLong(); // Bumped by every event write and refresh
+    private PastCursor pastCursor = null; // Guarded by this, null until the first refresh
+
+    // Position of the oldest past event loaded, the next page starts before it
+    private record PastCursor(long endTime, String uuid, boolean exhausted) { }
 
     public void init() {
         exec.scheduleAtFixedRate(
@@ -56,22 +65,53 @@ public class EventManager implements CalendarEvents {
     }
 
     public void reCalcEventsLists() {
-        List<EventEntry> newPastEvents = futureEvents.stream().filter(e -> e.endTime().isBefore(LocalDateTime.now())).toList();
-        pastEvents.addAll(newPastEvents);
-        futureEvents.removeAll(newPastEvents);
+        // Only events that already started can have ended
+        List<EventEntry> newPastEvents = futureEvents.before(LocalDateTime.now()).stream()
+                .filter(e -> e.endTime().isBefore(LocalDateTime.now()))
+                .toList();
+        pastEvents.putAll(newPastEvents);
+        newPastEvents.forEach(e -> futureEvents.remove(e.uuid()));
+        lastEventReCalc = Instant.now().getEpochSecond();
+    }
+
+    // Future events overlapping [from, to), from the loaded window. Used to flag clashes when editing events
+    public List<EventEntry> getFutureEventsOverlapping(LocalDateTime from, LocalDateTime to) {
+        return futureEvents.overlapping(from, to);
     }
 
-    public void clearPastEvents() throws IOException {
+    // Pages the next EVENT_PAST_PAGE_SIZE older past events into pastEvents, returns how many were loaded, 0 once
+    // every past event is loaded
+    public synchronized int loadMorePastEvents() throws IOException {
+        if (pastCursor == null || pastCursor.exhausted) { return 0; }
+        int pageSize = Settings.EVENT_PAST_PAGE_SIZE;
+        List<EventEntry> page = App.instance().getDatabase().getPastEventsPage(pastCursor.endTime, pastCursor.uuid, pageSize);
+        if (page.isEmpty()) {
+            pastCursor = new PastCursor(pastCursor.endTime, pastCursor.uuid, true);
+            return 0;
+        }
+        EventEntry oldest = page.getLast();
+        pastCursor = new PastCursor(
+                DateTimeUtil.localToUnix(oldest.endTime()), oldest.uuid().toString(), page.size() < pageSize
+        );
+        pastEvents.putAll(page);
+        return page.size();
+    }
+
+    public synchronized void clearPastEvents() throws IOException {
         App.instance().getDatabase().deletePastEventEntries(Instant.now().getEpochSecond());
+        calendarChanges.incrementAndGet();
         pastEvents.clear();
+        if (pastCursor != null) {
+            pastCursor = new PastCursor(pastCursor.endTime, pastCursor.uuid, true);
+        }
     }
 
     public void addEvent(EventEntry event) throws IOException {
         App.instance().getDatabase().upsertEvent(event);
+        calendarChanges.incrementAndGet();
         int lookForwardDays = Settings.EVENT_LOOK_FORWARD_DAYS;
         if (lookForwardDays == -1 || event.startTime().isAfter(LocalDateTime.now().minusDays(lookForwardDays))) {
-            List<ScheduledNotification> notifications = createEventReminders.apply(event);
-            scheduledNotifications.addAll(notifications);
+            createEventReminders.apply(event);
             futureEvents.add(event);
         }
     }
@@ -88,6 +128,7 @@ public class EventManager implements CalendarEvents {
     public void deleteEvent(EventEntry event) {
         try {
             App.instance().getDatabase().deleteEventByUUID(event.uuid());
+            calendarChanges.incrementAndGet();
             removeFromScheduled(event.uuid());
         } catch (IOException e) {
             System.err.println("Error deleting Event: " + event.uuid() + "| " + Arrays.toString(e.getStackTrace()));
@@ -98,6 +139,7 @@ public class EventManager implements CalendarEvents {
         try {
             removeFromScheduled(event.uuid());
             App.instance().getDatabase().archiveEvent(event.uuid(), true);
+            calendarChanges.incrementAndGet();
         } catch (IOException e) {
             System.err.println("Error archiving task: " + event.uuid() + "| " + Arrays.toString(e.getStackTrace()));
         }
@@ -113,11 +155,9 @@ public class EventManager implements CalendarEvents {
     }
 
     public void removeFromScheduled(UUID uuid) {
-        futureEvents.removeIf(e -> e.uuid().equals(uuid));
-        pastEvents.removeIf(e -> e.uuid().equals(uuid));
-        List<ScheduledNotification> notifications = scheduledNotifications.stream()
-                .filter(sn -> sn.uuid().equals(uuid)).toList();
-        scheduledNotifications.removeAll(notifications);
+        futureEvents.remove(uuid);
+        pastEvents.remove(uuid);
+        notificationScheduler.cancelAll(uuid);
     }
 
     public Function<EventEntry, List<ScheduledNotification>> createEventReminders = (EventEntry event) -> {
@@ -127,23 +167,18 @@ public class EventManager implements CalendarEvents {
 
         List<ScheduledNotification> newNotifications = new ArrayList<>(4);
         event.reminders().forEach(reminder -> {
-            if (scheduledNotifications.stream().noneMatch(
-                    sn -> sn.uuid().equals(event.uuid()) && sn.time().equals(reminder.time()))) {
-
-                ProcessBuilder notification = Notify.newEventNotify(tag, event, reminder.level());
-                Runnable notifyTask = () -> {
-                    //FIXME
-//                    try {
-//                        notification.start();
-//                        scheduledNotifications.removeIf(sn -> sn.uuid().equals(event.uuid()) && sn.time().equals(reminder.time()));
-//                    } catch (IOException e) {
-//                        System.err.printf("Error emitting notification for: %s, Error: %s%n", event, e);
-//                    }
-                };
-
-                var sf = exec.schedule(notifyTask, DateTimeUtil.delayToDateTime(reminder.time()), TimeUnit.SECONDS);
-                newNotifications.add(new ScheduledNotification(event.uuid(), reminder.time(), sf));
-            }
+            ProcessBuilder notification = Notify.newEventNotify(tag, event, reminder.level());
+            Runnable notifyTask = () -> {
+                //FIXME
+//                try {
+//                    notification.start();
+//                } catch (IOException e) {
+//                    System.err.printf("Error emitting notification for: %s, Error: %s%n", event, e);
+//                }
+            };
+
+            // Scheduler keeps one notification per (uuid, time), refreshes re-submitting a reminder only update it
+            newNotifications.add(notificationScheduler.schedule(event.uuid(), reminder.time(), notifyTask));
         });
         return newNotifications;
     };
@@ -151,29 +186,35 @@ public class EventManager implements CalendarEvents {
     public Consumer<EventManager> refreshEventNotifications = (self) -> {
 
         try {
+            LocalDateTime now = LocalDateTime.now();
+            long windowStart = Settings.EVENT_PAST_WINDOW_DAYS == -1
+                               ? Long.MIN_VALUE
+                               : DateTimeUtil.localToUnix(now.minusDays(Settings.EVENT_PAST_WINDOW_DAYS));
+            long lookForward = Settings.EVENT_LOOK_FORWARD_DAYS == -1
+                               ? Long.MAX_VALUE
+                               : DateTimeUtil.localToUnix(now.plusDays(Settings.EVENT_LOOK_FORWARD_DAYS));
 
-            long lookFoward = Settings.EVENT_LOOK_FORWARD_DAYS == -1
-                              ? -1
-                              : DateTimeUtil.localToUnix(LocalDateTime.now().plusDays(Settings.EVENT_LOOK_FORWARD_DAYS));
-
-            List<EventEntry> events = App.instance().getDatabase().getEvents(lookFoward);
+            List<EventEntry> events = App.instance().getDatabase().getEventsInWindow(windowStart, lookForward);
 
             Map<Boolean, List<EventEntry>> mappedEvents = events.stream()
-                    .collect(Collectors.groupingBy(c -> c.endTime().isAfter(LocalDateTime.now())));
-
-            pastEvents.clear();
-            pastEvents.addAll(mappedEvents.getOrDefault(Boolean.FALSE, List.of()).stream()
-                    .sorted(Comparator.comparing(EventEntry::startTime)).toList());
-
-            futureEvents.clear();
-            futureEvents.addAll(mappedEvents.getOrDefault(Boolean.TRUE, List.of()).stream()
-                    .sorted(Comparator.comparing(EventEntry::startTime)).toList());
-
-            List<ScheduledNotification> notifications = futureEvents.stream()
-                    .flatMap(event -> createEventReminders.apply(event).stream())
-                    .toList();
+                    .collect(Collectors.partitioningBy(c -> c.endTime().isAfter(now)));
+
+            // Only the window is replaced, past events older than it (pages loaded by "more past", or events the
+            // window has since moved past) are kept and paging carries on from the oldest one loaded
+            synchronized (self) {
+                List<EventEntry> merged = new ArrayList<>(mappedEvents.get(Boolean.FALSE));
+                pastEvents.forEach(event -> {
+                    if (DateTimeUtil.localToUnix(event.endTime()) < windowStart) { merged.add(event); }
+                });
+                pastEvents.replaceAll(merged);
+                if (pastCursor == null) {
+                    pastCursor = new PastCursor(windowStart, "", windowStart == Long.MIN_VALUE);
+                }
+            }
+            futureEvents.replaceAll(mappedEvents.get(Boolean.TRUE));
+            calendarChanges.incrementAndGet();
 
-            scheduledNotifications.addAll(notifications);
+            futureEvents.forEach(event -> createEventReminders.apply(event));
 
 
         } catch (IOException e) {
@@ -182,18 +223,22 @@ public class EventManager implements CalendarEvents {
     };
 
     @Override
-    public List<String> getCalendarEvents(LocalDate date, Function<DatedEntry, String> mapper) {
+    public List<EventEntry> getCalendarEntries(LocalDate from, LocalDate to) {
         try {
-            return App.instance().getDatabase().getEvents(DateTimeUtil.localToUnix(LocalDateTime.now().plusDays(30)))
-                    .stream()
-                    .filter(e -> e.startTime().toLocalDate().isEqual(date))
-                    .map(mapper)
-                    .toList();
+            return App.instance().getDatabase().getEventsStartingBetween(
+                    DateTimeUtil.localToUnix(from.atStartOfDay()), DateTimeUtil.localToUnix(to.atStartOfDay())
+            );
         } catch (IOException e) {
             System.err.println(e.getMessage());
+            calendarChanges.incrementAndGet(); // So a calendar index doesn't keep the failed load
             return List.of();
         }
     }
+
+    @Override
+    public long calendarVersion() {
+        return calendarChanges.get();
+    }
 }
 
 
@@ -7,10 +7,12 @@ import io.mindspice.toastit.App;
 import io.mindspice.toastit.entries.DatedEntry;
 import io.mindspice.toastit.entries.Entry;
 import io.mindspice.toastit.entries.task.TaskEntry;
+import io.mindspice.toastit.entries.task.TaskManager;
 import io.mindspice.toastit.entries.CompletableEntry;
 import io.mindspice.toastit.enums.EntryType;
 import io.mindspice.toastit.notification.Reminder;
 import io.mindspice.toastit.util.DateTimeUtil;
+import io.mindspice.toastit.util.EntryFiles;
 import io.mindspice.toastit.util.JSON;
 import io.mindspice.toastit.util.TableUtil;
 import io.mindspice.toastit.util.Util;
@@ -51,11 +53,11 @@ public record ProjectEntry(
         startedAt = startedAt.truncatedTo(ChronoUnit.MINUTES);
         completedAt = completedAt.truncatedTo(ChronoUnit.MINUTES);
 
-        if ((taskObjs == null || taskObjs.isEmpty()) & !tasks.isEmpty()) { ;
-            taskObjs = Collections.unmodifiableList(loadTasks(tasks));
-        } else if (tasks.isEmpty()) {
+        if (tasks.isEmpty()) {
             tasks = List.of();
             taskObjs = List.of();
+        } else if (taskObjs == null || (!(taskObjs instanceof LazyTasks) && taskObjs.isEmpty())) {
+            taskObjs = new LazyTasks(uuid, tasks);
         }
         try {
             basePath = basePath == null ? Util.getEntriesPath(EntryType.PROJECT) : basePath;
@@ -64,24 +66,66 @@ public record ProjectEntry(
         }
     }
 
-    public List<TaskEntry> loadTasks(List<UUID> taskUUIDs) {
-        if (taskUUIDs == null) {
-            return List.of();
+    // Task entries are only read when taskObjs is used, deserializing a project (e.g. listing or refreshing projects)
+    // does not touch its tasks. Nothing is kept between uses, every use reads the tasks in one batch through the
+    // database's task cache, so a project held in the active set still sees task edits made elsewhere. Iteration,
+    // streams and copies read once and walk that one list.
+    private static final class LazyTasks extends AbstractList<TaskEntry> {
+        private final UUID projectUUID;
+        private final List<UUID> taskUUIDs;
+
+        LazyTasks(UUID projectUUID, List<UUID> taskUUIDs) {
+            this.projectUUID = projectUUID;
+            this.taskUUIDs = taskUUIDs;
         }
-        List<TaskEntry> loadedTasks = new ArrayList<>();
-        taskUUIDs.forEach(uuid -> {
+
+        private List<TaskEntry> tasks() {
+            List<TaskEntry> tasks;
             try {
-                TaskEntry task = App.instance().getDatabase().getTaskByUUID(uuid);
-                if (task != null) {
-                    loadedTasks.add(task);
-                } else {
-                    System.err.printf("Task: %s null for project: %s", uuid, this.uuid);
+                TaskManager taskManager = App.instance().getTaskManager();
+                if (taskManager != null) {
+                    taskManager.writes.flush(); // Queued task saves are newer than their rows
                 }
+                tasks = App.instance().getDatabase().getTasks(taskUUIDs);
             } catch (IOException e) {
-                System.err.println("Error lading task" + e);
+                System.err.println("Error loading tasks for project: " + projectUUID + " | " + e.getMessage());
+                return List.of();
+            }
+            if (tasks.size() < taskUUIDs.size()) {
+                System.err.printf("Missing %d task(s) for project: %s%n", taskUUIDs.size() - tasks.size(), projectUUID);
             }
-        });
-        return loadedTasks;
+            return tasks;
+        }
+
+        @Override
+        public TaskEntry get(int index) {
+            return tasks().get(index);
+        }
+
+        @Override
+        public int size() {
+            return tasks().size();
+        }
+
+        @Override
+        public Iterator<TaskEntry> iterator() {
+            return tasks().iterator();
+        }
+
+        @Override
+        public Spliterator<TaskEntry> spliterator() {
+            return tasks().spliterator();
+        }
+
+        @Override
+        public Object[] toArray() {
+            return tasks().toArray();
+        }
+
+        @Override
+        public <A> A[] toArray(A[] array) {
+            return tasks().toArray(array);
+        }
     }
 
     public void flushToDisk() {
@@ -91,8 +135,7 @@ public record ProjectEntry(
         // Always write meta file on change
         Path metaFilePath = basePath.resolve(uuid + ".project");
         try {
-            String metaJson = JSON.writePretty(this);
-            Files.writeString(metaFilePath, metaJson);
+            EntryFiles.write(metaFilePath, this);
         } catch (IOException e) {
             throw new IllegalStateException("Failed to write project file: " + metaFilePath, e);
         }
@@ -159,6 +202,22 @@ public record ProjectEntry(
         return EntryType.PROJECT;
     }
 
+    // Identity like TaskEntry, the generated record equality would compare taskObjs and load the lazy tasks
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) { return true; }
+        if (object == null || getClass() != object.getClass()) { return false; }
+
+        ProjectEntry projectEntry = (ProjectEntry) object;
+
+        return Objects.equals(uuid, projectEntry.uuid);
+    }
+
+    @Override
+    public int hashCode() {
+        return uuid != null ? uuid.hashCode() : 0;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
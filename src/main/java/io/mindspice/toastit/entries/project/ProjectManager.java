@@ -2,20 +2,21 @@ package io.mindspice.toastit.entries.project;
 
 import io.mindspice.toastit.App;
 import io.mindspice.toastit.entries.CalendarEvents;
-import io.mindspice.toastit.entries.DatedEntry;
+import io.mindspice.toastit.entries.EntryStore;
+import io.mindspice.toastit.entries.WriteBehind;
+import io.mindspice.toastit.notification.NotificationScheduler;
 import io.mindspice.toastit.notification.Notify;
 import io.mindspice.toastit.notification.ScheduledNotification;
-import io.mindspice.toastit.util.DateTimeUtil;
-import io.mindspice.toastit.util.JSON;
+import io.mindspice.toastit.sqlite.EntryChange;
 import io.mindspice.toastit.util.Settings;
 import io.mindspice.toastit.util.Tag;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -24,11 +25,21 @@ import java.util.function.Function;
 
 public class ProjectManager implements CalendarEvents {
 
-    public final List<ScheduledNotification> scheduledNotifications = new CopyOnWriteArrayList<>();
-    public final List<ProjectEntry> activeProjects = new CopyOnWriteArrayList<>();
+    public final EntryStore<ProjectEntry> activeProjects = new EntryStore<>(ProjectEntry::dueBy);
     public final ScheduledExecutorService exec = App.instance().getExec();
+    public final NotificationScheduler notificationScheduler = App.instance().getNotificationScheduler();
+    public volatile long revision = -1; // Refresh watermark, -1 forces a full load
+    // Queued task saves are written first, a project is never in the database before its tasks
+    public final WriteBehind<ProjectEntry> writes = new WriteBehind<>(
+            projects -> {
+                App.instance().getTaskManager().writes.flush();
+                App.instance().getDatabase().upsertProjects(projects);
+            },
+            ProjectEntry::flushToDisk
+    );
 
     public void init() {
+        writes.start(exec, Settings.WRITE_BEHIND_DELAY_MS);
         exec.scheduleAtFixedRate(
                 () -> refreshActiveProjects.accept(this),
                 0,
@@ -42,33 +53,25 @@ public class ProjectManager implements CalendarEvents {
     }
 
     public List<ProjectEntry> getAllProjects() throws IOException {
-        List<ProjectEntry.Stub> stubs = App.instance().getDatabase().getAllProjects();
-        List<ProjectEntry> tasks = new ArrayList<>(stubs.size());
-        for (var stub : stubs) {
-            try {
-                tasks.add(JSON.loadObjectFromFile(stub.metaPath(), ProjectEntry.class));
-            } catch (IOException e) {
-                System.err.println("Failed to load: " + e.getMessage());
-            }
-        }
-        return tasks.stream().sorted(Comparator.comparing(ProjectEntry::dueBy)).toList();
+        writes.flush(); // Reads from the database, queued saves have to be in it
+        List<ProjectEntry> projects = App.instance().getDatabase().getAllProjectEntries();
+        return projects.stream().sorted(Comparator.comparing(ProjectEntry::dueBy)).toList();
     }
 
+    // Queued to be written in the background, the active set and reminders are updated immediately. Tasks are saved
+    // through the task manager when they are created or edited, the project only holds their uuids.
     public void addProject(ProjectEntry project) throws IOException {
-        App.instance().getDatabase().upsertProject(project);
+        writes.put(project);
         if (project.started()) {
-            List<ScheduledNotification> notifications = createProjectReminders.apply(project);
-            scheduledNotifications.addAll(notifications);
+            createProjectReminders.apply(project);
             activeProjects.add(project);
         }
-        project.flushToDisk();
     }
 
     public void updateProject(ProjectEntry project) {
         try {
             removeFromScheduled(project.uuid());
             addProject(project);
-            project.flushToDisk();
         } catch (IOException e) {
             System.err.println("Error deleting project: " + project.uuid() + "| " + Arrays.toString(e.getStackTrace()));
         }
@@ -76,9 +79,10 @@ public class ProjectManager implements CalendarEvents {
 
     public void deleteProject(ProjectEntry project) {
         try {
+            writes.discard(project.uuid());
             App.instance().getDatabase().deleteProjectByUUID(project.uuid());
             removeFromScheduled(project.uuid());
-            Files.delete(project.getFile().toPath());
+            Files.deleteIfExists(project.getFile().toPath()); // Not written yet if its save was still queued
         } catch (IOException e) {
             System.err.println("Error deleting project: " + project.uuid() + "| " + Arrays.toString(e.getStackTrace()));
         }
@@ -87,6 +91,7 @@ public class ProjectManager implements CalendarEvents {
     public void archiveProject(ProjectEntry project) {
         try {
             removeFromScheduled(project.uuid());
+            writes.flush(); // The row has to exist to be archived
             App.instance().getDatabase().archiveProject(project.uuid(), true);
         } catch (IOException e) {
             System.err.println("Error archiving project: " + project.uuid() + "| " + Arrays.toString(e.getStackTrace()));
@@ -94,10 +99,8 @@ public class ProjectManager implements CalendarEvents {
     }
 
     public void removeFromScheduled(UUID uuid) {
-        activeProjects.removeIf(t -> t.uuid().equals(uuid));
-        List<ScheduledNotification> notifications = scheduledNotifications.stream()
-                .filter(sn -> sn.uuid().equals(uuid)).toList();
-        scheduledNotifications.removeAll(notifications);
+        activeProjects.remove(uuid);
+        notificationScheduler.cancelAll(uuid);
     }
 
     public Function<ProjectEntry, List<ScheduledNotification>> createProjectReminders = (project) -> {
@@ -114,49 +117,55 @@ public class ProjectManager implements CalendarEvents {
                 //FIXME
 //                try {
 //                    notification.start();
-//                    scheduledNotifications.removeIf(sn -> sn.uuid().equals(project.uuid()) && sn.time().equals(reminder.time()));
 //                } catch (IOException e) {
 //                    System.err.printf("Error emitting notification for: %s, Error: %s%n", project, e);
 //                }
             };
-            var sf = exec.schedule(notifyProject, DateTimeUtil.delayToDateTime(reminder.time()), TimeUnit.SECONDS);
-            newNotifications.add(new ScheduledNotification(project.uuid(), reminder.time(), sf));
+            newNotifications.add(notificationScheduler.schedule(project.uuid(), reminder.time(), notifyProject));
         });
         return newNotifications;
 
     };
 
+    // First run loads every active project, later runs only apply rows changed after the last revision seen
     public Consumer<ProjectManager> refreshActiveProjects = (self) -> {
         try {
-            activeProjects.clear();
-            List<ProjectEntry.Stub> projectStubs = App.instance().getDatabase().getActiveProjects();
-            List<ProjectEntry> fullProjects = new ArrayList<>(projectStubs.size());
-            for (var stub : projectStubs) {
-                try {
-                    fullProjects.add(JSON.loadObjectFromFile(stub.metaPath(), ProjectEntry.class));
-                } catch (IOException e) {
-                    System.err.println("Failed to load: " + e.getMessage());
-                }
+            if (revision < 0) {
+                long loadRevision = App.instance().getDatabase().getRevision();
+                List<ProjectEntry> fullProjects = App.instance().getDatabase().getActiveProjectEntries();
+                activeProjects.replaceAll(fullProjects);
+
+                activeProjects.forEach(project -> createProjectReminders.apply(project));
+                revision = loadRevision;
+                return;
             }
 
-            activeProjects.addAll(fullProjects.stream().sorted(Comparator.comparing(ProjectEntry::dueBy)).toList());
-
-            List<ScheduledNotification> notifications = activeProjects.stream()
-                    .flatMap(project -> createProjectReminders.apply(project).stream())
-                    .toList();
-
-            scheduledNotifications.addAll(notifications);
+            List<EntryChange<ProjectEntry>> changes = App.instance().getDatabase().getActiveProjectChanges(revision);
+            if (changes.isEmpty()) { return; }
+            for (var change : changes) {
+                removeFromScheduled(change.uuid());
+                if (!change.isRemoval()) {
+                    activeProjects.add(change.entry());
+                    createProjectReminders.apply(change.entry());
+                }
+            }
+            revision = changes.stream().mapToLong(EntryChange::revision).max().orElse(revision);
         } catch (IOException e) {
             System.err.printf("Failed to refresh active projects: %s%n%s%n",
                     e.getMessage(), Arrays.toString(e.getStackTrace()));
         }
     };
 
+    // Only entries due at the start of a day, i.e. given a date without a time, are listed
     @Override
-    public List<String> getCalendarEvents(LocalDate date, Function<DatedEntry, String> dataMapper) {
-        return activeProjects.stream()
-                .filter(e -> e.dueBy().isEqual(date.atStartOfDay()))
-                .map(dataMapper)
+    public List<ProjectEntry> getCalendarEntries(LocalDate from, LocalDate to) {
+        return activeProjects.between(from.atStartOfDay(), to.atStartOfDay()).stream()
+                .filter(e -> e.dueBy().toLocalTime().equals(LocalTime.MIDNIGHT))
                 .toList();
     }
+
+    @Override
+    public long calendarVersion() {
+        return activeProjects.version();
+    }
 }
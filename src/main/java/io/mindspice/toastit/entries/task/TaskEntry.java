@@ -8,6 +8,7 @@ import io.mindspice.toastit.entries.Entry;
 import io.mindspice.toastit.enums.EntryType;
 import io.mindspice.toastit.notification.Reminder;
 import io.mindspice.toastit.util.DateTimeUtil;
+import io.mindspice.toastit.util.EntryFiles;
 import io.mindspice.toastit.util.JSON;
 import io.mindspice.toastit.util.TableUtil;
 import io.mindspice.toastit.util.Util;
@@ -61,8 +62,7 @@ public record TaskEntry(
         // Always write meta file on change
         Path metaFilePath = basePath.resolve(uuid + ".task");
         try {
-            String metaJson = JSON.writePretty(this);
-            Files.writeString(metaFilePath, metaJson);
+            EntryFiles.write(metaFilePath, this);
         } catch (IOException e) {
             throw new IllegalStateException("Failed to write task file: " + metaFilePath, e);
         }
@@ -295,7 +295,7 @@ public record TaskEntry(
             String metaPath
     ) {
         public TaskEntry getFull() throws IOException {
-            return JSON.loadObjectFromFile(metaPath, TaskEntry.class);
+            return EntryFiles.read(metaPath, TaskEntry.class);
         }
 
     }
@@ -2,20 +2,21 @@ package io.mindspice.toastit.entries.task;
 
 import io.mindspice.toastit.App;
 import io.mindspice.toastit.entries.CalendarEvents;
-import io.mindspice.toastit.entries.DatedEntry;
+import io.mindspice.toastit.entries.EntryStore;
+import io.mindspice.toastit.entries.WriteBehind;
+import io.mindspice.toastit.notification.NotificationScheduler;
 import io.mindspice.toastit.notification.Notify;
 import io.mindspice.toastit.notification.ScheduledNotification;
-import io.mindspice.toastit.util.DateTimeUtil;
-import io.mindspice.toastit.util.JSON;
+import io.mindspice.toastit.sqlite.EntryChange;
 import io.mindspice.toastit.util.Settings;
 import io.mindspice.toastit.util.Tag;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -24,11 +25,17 @@ import java.util.stream.Stream;
 
 
 public class TaskManager implements CalendarEvents {
-    public final List<ScheduledNotification> scheduledNotifications = new CopyOnWriteArrayList<>();
-    public final List<TaskEntry> activeTasks = new CopyOnWriteArrayList<>();
+    public final EntryStore<TaskEntry> activeTasks = new EntryStore<>(TaskEntry::dueBy);
     public final ScheduledExecutorService exec = App.instance().getExec();
+    public final NotificationScheduler notificationScheduler = App.instance().getNotificationScheduler();
+    public volatile long revision = -1; // Refresh watermark, -1 forces a full load
+    public final WriteBehind<TaskEntry> writes = new WriteBehind<>(
+            tasks -> App.instance().getDatabase().upsertTasks(tasks),
+            TaskEntry::flushToDisk
+    );
 
     public void init() {
+        writes.start(exec, Settings.WRITE_BEHIND_DELAY_MS);
         exec.scheduleAtFixedRate(
                 () -> refreshActiveTasks.accept(this),
                 0,
@@ -42,33 +49,24 @@ public class TaskManager implements CalendarEvents {
     }
 
     public List<TaskEntry> getAllTasks() throws IOException {
-        List<TaskEntry.Stub> stubs = App.instance().getDatabase().getAllTasks();
-        List<TaskEntry> tasks = new ArrayList<>(stubs.size());
-        for (var stub : stubs) {
-            try {
-                tasks.add(JSON.loadObjectFromFile(stub.metaPath(), TaskEntry.class));
-            } catch (IOException e) {
-                System.err.println("Failed to load: " + e.getMessage());
-            }
-        }
+        writes.flush(); // Reads from the database, queued saves have to be in it
+        List<TaskEntry> tasks = App.instance().getDatabase().getAllTaskEntries();
         return tasks.stream().sorted(Comparator.comparing(TaskEntry::dueBy)).toList();
     }
 
+    // Queued to be written in the background, the active set and reminders are updated immediately
     public void addTask(TaskEntry task) throws IOException {
-        App.instance().getDatabase().upsertTask(task);
+        writes.put(task);
         if (task.started()) {
-            List<ScheduledNotification> notifications = createTaskReminders.apply(task);
-            scheduledNotifications.addAll(notifications);
+            createTaskReminders.apply(task);
             activeTasks.add(task);
         }
-        task.flushToDisk();
     }
 
     public void updateTask(TaskEntry task) {
         try {
             removeFromScheduled(task.uuid());
             addTask(task);
-            task.flushToDisk();
         } catch (IOException e) {
             System.err.println("Error deleting task: " + task.uuid() + "| " + Arrays.toString(e.getStackTrace()));
         }
@@ -76,9 +74,10 @@ public class TaskManager implements CalendarEvents {
 
     public void deleteTask(TaskEntry task) {
         try {
+            writes.discard(task.uuid());
             App.instance().getDatabase().deleteTaskByUUID(task.uuid());
             removeFromScheduled(task.uuid());
-            Files.delete(task.getFile().toPath());
+            Files.deleteIfExists(task.getFile().toPath()); // Not written yet if its save was still queued
         } catch (IOException e) {
             System.err.println("Error deleting task: " + task.uuid() + "| " + Arrays.toString(e.getStackTrace()));
         }
@@ -87,6 +86,7 @@ public class TaskManager implements CalendarEvents {
     public void archiveTask(TaskEntry task) {
         try {
             removeFromScheduled(task.uuid());
+            writes.flush(); // The row has to exist to be archived
             App.instance().getDatabase().archiveTask(task.uuid(), true);
         } catch (IOException e) {
             System.err.println("Error archiving task: " + task.uuid() + "| " + Arrays.toString(e.getStackTrace()));
@@ -94,10 +94,8 @@ public class TaskManager implements CalendarEvents {
     }
 
     public void removeFromScheduled(UUID uuid) {
-        activeTasks.removeIf(t -> t.uuid().equals(uuid));
-        List<ScheduledNotification> notifications = scheduledNotifications.stream()
-                .filter(sn -> sn.uuid().equals(uuid)).toList();
-        scheduledNotifications.removeAll(notifications);
+        activeTasks.remove(uuid);
+        notificationScheduler.cancelAll(uuid);
     }
 
     public Function<TaskEntry, List<ScheduledNotification>> createTaskReminders = (task) -> {
@@ -114,38 +112,39 @@ public class TaskManager implements CalendarEvents {
                 //FIXME
 //                try {
 //                    notification.start();
-//                    scheduledNotifications.removeIf(sn -> sn.uuid().equals(task.uuid()) && sn.time().equals(reminder.time()));
 //                } catch (IOException e) {
 //                    System.err.printf("Error emitting notification for: %s, Error: %s%n", task, e);
 //                }
             };
-            var sf = exec.schedule(notifyTask, DateTimeUtil.delayToDateTime(reminder.time()), TimeUnit.SECONDS);
-            newNotifications.add(new ScheduledNotification(task.uuid(), reminder.time(), sf));
+            newNotifications.add(notificationScheduler.schedule(task.uuid(), reminder.time(), notifyTask));
         });
         return newNotifications;
 
     };
 
+    // First run loads every active task, later runs only apply rows changed after the last revision seen
     public Consumer<TaskManager> refreshActiveTasks = (self) -> {
         try {
-            activeTasks.clear();
-            List<TaskEntry.Stub> taskStubs = App.instance().getDatabase().getActiveTasks();
-            List<TaskEntry> fullTasks = new ArrayList<>(taskStubs.size());
-            for (var stub : taskStubs) {
-                try {
-                    fullTasks.add(JSON.loadObjectFromFile(stub.metaPath(), TaskEntry.class));
-                } catch (IOException e) {
-                    System.err.println("Failed to load: " + e.getMessage());
-                }
+            if (revision < 0) {
+                long loadRevision = App.instance().getDatabase().getRevision();
+                List<TaskEntry> fullTasks = App.instance().getDatabase().getActiveTaskEntries();
+                activeTasks.replaceAll(fullTasks);
+
+                activeTasks.forEach(task -> createTaskReminders.apply(task));
+                revision = loadRevision;
+                return;
             }
 
-            activeTasks.addAll(fullTasks.stream().sorted(Comparator.comparing(TaskEntry::dueBy)).toList());
-
-            List<ScheduledNotification> notifications = activeTasks.stream()
-                    .flatMap(task -> createTaskReminders.apply(task).stream())
-                    .toList();
-
-            scheduledNotifications.addAll(notifications);
+            List<EntryChange<TaskEntry>> changes = App.instance().getDatabase().getActiveTaskChanges(revision);
+            if (changes.isEmpty()) { return; }
+            for (var change : changes) {
+                removeFromScheduled(change.uuid());
+                if (!change.isRemoval()) {
+                    activeTasks.add(change.entry());
+                    createTaskReminders.apply(change.entry());
+                }
+            }
+            revision = changes.stream().mapToLong(EntryChange::revision).max().orElse(revision);
         } catch (IOException e) {
             System.err.printf("Failed to refresh active tasks: %s%n%s%n",
                     e.getMessage(), Arrays.toString(e.getStackTrace()));
@@ -153,11 +152,16 @@ public class TaskManager implements CalendarEvents {
     };
 
 
+    // Only entries due at the start of a day, i.e. given a date without a time, are listed
     @Override
-    public List<String> getCalendarEvents(LocalDate date, Function<DatedEntry, String> dataMapper) {
-        return activeTasks.stream()
-                .filter(e -> e.dueBy().isEqual(date.atStartOfDay()))
-                .map(dataMapper)
+    public List<TaskEntry> getCalendarEntries(LocalDate from, LocalDate to) {
+        return activeTasks.between(from.atStartOfDay(), to.atStartOfDay()).stream()
+                .filter(e -> e.dueBy().toLocalTime().equals(LocalTime.MIDNIGHT))
                 .toList();
     }
+
+    @Override
+    public long calendarVersion() {
+        return activeTasks.version();
+    }
 }
@@ -0,0 +1,239 @@
+package io.mindspice.toastit.entries.text;
+
+import io.mindspice.toastit.entries.SearchResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
+
+
+// Line search over entry files without decoding them. The search terms are compiled once to a byte matcher
+// (Boyer-Moore-Horspool for one term, Aho-Corasick for several, a line matches if it contains any term) that runs
+// over the raw UTF-8 bytes. Large files are memory mapped, small ones are read into a pooled buffer, so only the
+// matching lines are ever turned into Strings. Results are pushed to a sink one at a time and the search stops
+// as soon as the sink returns false. Thread safe, concurrent searches each take their own buffer from the pool.
+public class FileSearch {
+    private static final int MAP_THRESHOLD = 256 * 1024; // Files at least this large are mapped instead of read
+    private static final int INITIAL_BUFFER = 16 * 1024;
+
+    private final ByteMatcher matcher;
+    private final Predicate<String> lineFilter;
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    private FileSearch(ByteMatcher matcher, Predicate<String> lineFilter) {
+        this.matcher = matcher;
+        this.lineFilter = lineFilter;
+    }
+
+    public static FileSearch of(String term) {
+        return of(List.of(term));
+    }
+
+    public static FileSearch of(List<String> terms) {
+        return of(terms, null);
+    }
+
+    // Lines the byte matcher finds are decoded and only returned if they also pass lineFilter (null passes all),
+    // for checks the byte matcher can't do such as regexes or requiring several terms on one line
+    public static FileSearch of(List<String> terms, Predicate<String> lineFilter) {
+        List<byte[]> patterns = terms.stream().map(t -> t.getBytes(StandardCharsets.UTF_8)).toList();
+        if (patterns.isEmpty() || patterns.stream().anyMatch(p -> p.length == 0)) {
+            return new FileSearch(EVERY_LINE, lineFilter); // Same as String.contains("")
+        }
+        return new FileSearch(
+                patterns.size() == 1 ? new Horspool(patterns.getFirst()) : new AhoCorasick(patterns),
+                lineFilter
+        );
+    }
+
+    // Feeds each matching line to sink in file order, returns false if the sink stopped the search
+    public boolean search(TextEntry entry, Predicate<SearchResult> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(entry.getFilePath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                return searchBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), entry, sink);
+            }
+            ByteBuffer buffer = takeBuffer((int) size);
+            try {
+                while (buffer.hasRemaining() && channel.read(buffer) > 0) { }
+                buffer.flip();
+                return searchBuffer(buffer, entry, sink);
+            } finally {
+                buffers.offer(buffer);
+            }
+        }
+    }
+
+    // At most limit results, in the order of entries
+    public List<SearchResult> search(Collection<TextEntry> entries, int limit) {
+        List<SearchResult> results = new ArrayList<>();
+        for (TextEntry entry : entries) {
+            try {
+                if (!search(entry, capped(results, limit))) {
+                    break;
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading file: " + entry.getFilePath());
+            }
+        }
+        return results;
+    }
+
+    private static Predicate<SearchResult> capped(List<SearchResult> results, int limit) {
+        return result -> {
+            if (results.size() >= limit) { return false; }
+            results.add(result);
+            return results.size() < limit;
+        };
+    }
+
+    private ByteBuffer takeBuffer(int size) {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null || buffer.capacity() < size) {
+            // Grown buffers go back to the pool, so repeated searches settle on the largest small file
+            buffer = ByteBuffer.allocate(Math.max(size, buffer == null ? INITIAL_BUFFER : buffer.capacity() * 2));
+        }
+        return buffer.clear().limit(size);
+    }
+
+    private boolean searchBuffer(ByteBuffer buffer, TextEntry entry, Predicate<SearchResult> sink) {
+        int limit = buffer.limit();
+        int from = 0;
+        while (from < limit) {
+            int matchEnd = matcher.find(buffer, from, limit);
+            if (matchEnd < 0) { break; }
+            int lineStart = matchEnd - 1;
+            while (lineStart > from && buffer.get(lineStart - 1) != '\n') {
+                lineStart--;
+            }
+            int lineEnd = Math.max(matchEnd - 1, lineStart);
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            String line = decodeLine(buffer, lineStart, lineEnd);
+            if ((lineFilter == null || lineFilter.test(line)) && !sink.test(new SearchResult(line, entry))) {
+                return false;
+            }
+            from = lineEnd + 1; // One result per line
+        }
+        return true;
+    }
+
+    private static String decodeLine(ByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        byte[] line = new byte[end - start];
+        buffer.get(start, line);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+
+    // Matchers, find returns the end offset (exclusive) of the first match starting at or after from, or -1
+
+    private interface ByteMatcher {
+        int find(ByteBuffer buffer, int from, int to);
+    }
+
+    // Matches at the start of every line, from is always a line start
+    private static final ByteMatcher EVERY_LINE = (buffer, from, to) -> from < to ? from + 1 : -1;
+
+    private static final class Horspool implements ByteMatcher {
+        private final byte[] pattern;
+        private final int[] shift = new int[256];
+
+        Horspool(byte[] pattern) {
+            this.pattern = pattern;
+            Arrays.fill(shift, pattern.length);
+            for (int i = 0; i < pattern.length - 1; ++i) {
+                shift[pattern[i] & 0xFF] = pattern.length - 1 - i;
+            }
+        }
+
+        @Override
+        public int find(ByteBuffer buffer, int from, int to) {
+            int last = pattern.length - 1;
+            for (int pos = from; pos + last < to; pos += shift[buffer.get(pos + last) & 0xFF]) {
+                int i = last;
+                while (i >= 0 && buffer.get(pos + i) == pattern[i]) {
+                    i--;
+                }
+                if (i < 0) { return pos + pattern.length; }
+            }
+            return -1;
+        }
+    }
+
+    // Full transition table (states x 256), one lookup per input byte whatever the number of terms
+    private static final class AhoCorasick implements ByteMatcher {
+        private final int[][] next;
+        private final boolean[] terminal;
+
+        AhoCorasick(List<byte[]> patterns) {
+            List<int[]> trie = new ArrayList<>();
+            List<Boolean> ends = new ArrayList<>();
+            trie.add(newState());
+            ends.add(false);
+            for (byte[] pattern : patterns) {
+                int state = 0;
+                for (byte b : pattern) {
+                    int c = b & 0xFF;
+                    if (trie.get(state)[c] == -1) {
+                        trie.get(state)[c] = trie.size();
+                        trie.add(newState());
+                        ends.add(false);
+                    }
+                    state = trie.get(state)[c];
+                }
+                ends.set(state, true);
+            }
+
+            next = trie.toArray(int[][]::new);
+            terminal = new boolean[next.length];
+            int[] fail = new int[next.length];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int c = 0; c < 256; ++c) {
+                if (next[0][c] == -1) {
+                    next[0][c] = 0;
+                } else {
+                    fail[next[0][c]] = 0;
+                    queue.add(next[0][c]);
+                }
+            }
+            terminal[0] = ends.getFirst();
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                terminal[state] = ends.get(state) || terminal[fail[state]];
+                for (int c = 0; c < 256; ++c) {
+                    int child = next[state][c];
+                    if (child == -1) {
+                        next[state][c] = next[fail[state]][c];
+                    } else {
+                        fail[child] = next[fail[state]][c];
+                        queue.add(child);
+                    }
+                }
+            }
+        }
+
+        private static int[] newState() {
+            int[] state = new int[256];
+            Arrays.fill(state, -1);
+            return state;
+        }
+
+        @Override
+        public int find(ByteBuffer buffer, int from, int to) {
+            int state = 0;
+            for (int pos = from; pos < to; ++pos) {
+                state = next[state][buffer.get(pos) & 0xFF];
+                if (terminal[state]) { return pos + 1; }
+            }
+            return -1;
+        }
+    }
+}
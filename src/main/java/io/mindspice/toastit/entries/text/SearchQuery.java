@@ -0,0 +1,150 @@
+package io.mindspice.toastit.entries.text;
+
+import io.mindspice.toastit.util.DateTimeUtil;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+
+// Parsed search input for notes/journals:
+//   word            line contains word (case sensitive, every word/phrase/regex must match the same line)
+//   "some phrase"   line contains the phrase
+//   /regex/ re:regex line matches the regex (java syntax, (?i) for case insensitive), the closing / has to end
+//                   a word so paths like /usr/bin stay plain words
+//   tag:name        entry has the tag (repeat for several, all required)
+//   after:date      created on or after the date, before:date created before it (MM/dd/yy patterns or yyyy-MM-dd)
+// Tag and date filters are metadata only, they run as a sqlite query before any file is opened. A query with
+// only metadata filters never reads file contents.
+public record SearchQuery(
+        List<String> terms,
+        List<String> phrases,
+        List<Pattern> patterns,
+        List<String> tags,
+        LocalDateTime after,
+        LocalDateTime before
+) {
+
+    // Input the grammar rejects (a lone quote, a bad regex or date) is searched for as typed, a single literal
+    public static SearchQuery parseOrLiteral(String input) {
+        try {
+            return parse(input);
+        } catch (IllegalArgumentException e) {
+            return new SearchQuery(List.of(input.strip()), List.of(), List.of(), List.of(), null, null);
+        }
+    }
+
+    public static SearchQuery parse(String input) throws IllegalArgumentException {
+        List<String> terms = new ArrayList<>();
+        List<String> phrases = new ArrayList<>();
+        List<Pattern> patterns = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        LocalDateTime after = null;
+        LocalDateTime before = null;
+
+        String s = input.strip();
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"' || (c == '/' && regexEnd(s, i) > 0)) {
+                int end = c == '"' ? s.indexOf(c, i + 1) : regexEnd(s, i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed " + c + " in search: " + input);
+                }
+                String quoted = s.substring(i + 1, end);
+                if (c == '"') {
+                    if (!quoted.isEmpty()) { phrases.add(quoted); }
+                } else {
+                    patterns.add(Pattern.compile(quoted));
+                }
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < s.length() && !Character.isWhitespace(s.charAt(end))) {
+                    end++;
+                }
+                String word = s.substring(i, end);
+                switch (word) {
+                    case String w when w.startsWith("tag:") && w.length() > 4 -> tags.add(w.substring(4));
+                    case String w when w.startsWith("after:") -> after = parseDate(w.substring(6));
+                    case String w when w.startsWith("before:") -> before = parseDate(w.substring(7));
+                    case String w when w.startsWith("re:") && w.length() > 3 -> patterns.add(Pattern.compile(w.substring(3)));
+                    default -> terms.add(word);
+                }
+                i = end;
+            }
+        }
+        return new SearchQuery(List.copyOf(terms), List.copyOf(phrases), List.copyOf(patterns), List.copyOf(tags),
+                after, before);
+    }
+
+    // Index of the / closing a regex opened at start, one followed by whitespace or the end of input, -1 if none
+    private static int regexEnd(String s, int start) {
+        for (int end = s.indexOf('/', start + 1); end > 0; end = s.indexOf('/', end + 1)) {
+            if (end + 1 == s.length() || Character.isWhitespace(s.charAt(end + 1))) {
+                return end;
+            }
+        }
+        return -1;
+    }
+
+    private static LocalDateTime parseDate(String date) {
+        try {
+            return LocalDate.parse(date).atStartOfDay();
+        } catch (DateTimeParseException e) {
+            try {
+                return DateTimeUtil.parseDateInput(date).atStartOfDay();
+            } catch (DateTimeException ex) {
+                throw new IllegalArgumentException("Invalid date in search: " + date);
+            }
+        }
+    }
+
+    public boolean hasMetadataFilter() {
+        return !tags.isEmpty() || after != null || before != null;
+    }
+
+    public boolean hasTextFilter() {
+        return !terms.isEmpty() || !phrases.isEmpty() || !patterns.isEmpty();
+    }
+
+    // Plain words only, input the backends handle without a plan
+    public boolean isWordsOnly() {
+        return phrases.isEmpty() && patterns.isEmpty();
+    }
+
+    public List<String> literals() {
+        return Stream.concat(terms.stream(), phrases.stream()).toList();
+    }
+
+    // The byte matcher looks for the longest literal, usually the rarest, decoded lines are then checked
+    // against everything else. Regex only queries check every line.
+    public FileSearch fileSearch() {
+        List<String> literals = literals();
+        if (literals.size() == 1 && patterns.isEmpty()) {
+            return FileSearch.of(literals.getFirst());
+        }
+        List<String> anchor = literals.stream().max(Comparator.comparingInt(String::length)).map(List::of).orElse(List.of());
+        return FileSearch.of(anchor, lineFilter());
+    }
+
+    public Predicate<String> lineFilter() {
+        List<String> literals = literals();
+        return line -> literals.stream().allMatch(line::contains) && patterns.stream().allMatch(p -> p.matcher(line).find());
+    }
+
+    public boolean matchesMetadata(TextEntry entry) {
+        return (after == null || !entry.createdAt().isBefore(after))
+                && (before == null || entry.createdAt().isBefore(before))
+                && tags.stream().allMatch(tag -> entry.tags().stream().anyMatch(tag::equalsIgnoreCase));
+    }
+}
@@ -0,0 +1,153 @@
+package io.mindspice.toastit.entries.text;
+
+import io.mindspice.toastit.entries.SearchResult;
+import io.mindspice.toastit.util.Settings;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+
+// A running file search. A fixed number of workers (SEARCH_CONCURRENCY, 1 without THREADED_SEARCH) pull entries
+// off a shared cursor, so file I/O is bounded however many entries there are. Every match is handed to onResult
+// as soon as it is found (from the worker threads), results() returns them in entry order. The whole search has
+// one deadline (SEARCH_TIMEOUT_SEC) and stops early on cancel(): workers check between files and after every
+// match, nothing is interrupted.
+public class SearchTask {
+    private final FileSearch search;
+    private final List<TextEntry> entries;
+    private final Consumer<SearchResult> onResult;
+    private final AtomicReferenceArray<List<SearchResult>> perEntry;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicInteger searched = new AtomicInteger();
+    private final AtomicInteger remaining;
+    private final CountDownLatch done;
+    private final long deadlineNanos;
+    private volatile boolean cancelled = false;
+    private volatile boolean timedOut = false;
+
+    private SearchTask(FileSearch search, List<TextEntry> entries, Consumer<SearchResult> onResult, int workers) {
+        this.search = search;
+        this.entries = entries;
+        this.onResult = onResult;
+        this.perEntry = new AtomicReferenceArray<>(Math.max(1, entries.size()));
+        this.remaining = new AtomicInteger(Settings.SEARCH_MAX_RESULTS);
+        this.done = new CountDownLatch(workers);
+        this.deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(Settings.SEARCH_TIMEOUT_SEC);
+    }
+
+    public static SearchTask start(FileSearch search, List<TextEntry> entries, Consumer<SearchResult> onResult) {
+        List<TextEntry> snapshot = List.copyOf(entries);
+        int workers = Settings.THREADED_SEARCH
+                      ? Math.max(1, Math.min(Settings.SEARCH_CONCURRENCY, snapshot.size()))
+                      : 1;
+        var task = new SearchTask(search, snapshot, onResult, workers);
+        for (int i = 0; i < workers; ++i) {
+            Thread.ofVirtual().name("search-worker-" + i).start(task::work);
+        }
+        return task;
+    }
+
+    // Results that are already known, e.g. from an index, are still passed through onResult
+    public static SearchTask completed(List<SearchResult> results, Consumer<SearchResult> onResult) {
+        var task = new SearchTask(null, List.of(), onResult, 0);
+        results.forEach(onResult);
+        task.perEntry.set(0, results);
+        return task;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    public int filesSearched() {
+        return searched.get();
+    }
+
+    public int fileCount() {
+        return entries.size();
+    }
+
+    // Blocks until the workers finish or the deadline passes (which cancels them), returns results() either way.
+    // An interrupt cancels the search and is left set on the calling thread.
+    public List<SearchResult> await() {
+        try {
+            long wait = deadlineNanos - System.nanoTime();
+            if (!done.await(Math.max(0, wait), TimeUnit.NANOSECONDS)) {
+                timedOut = true;
+                cancel();
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+        }
+        return results();
+    }
+
+    // Matches found so far, in entry order
+    public List<SearchResult> results() {
+        List<SearchResult> results = new ArrayList<>();
+        for (int i = 0; i < perEntry.length(); ++i) {
+            List<SearchResult> entryResults = perEntry.get(i);
+            if (entryResults != null) {
+                synchronized (entryResults) {
+                    results.addAll(entryResults);
+                }
+            }
+        }
+        return results;
+    }
+
+    private boolean shouldStop() {
+        if (!cancelled && System.nanoTime() - deadlineNanos > 0) {
+            timedOut = true;
+            cancelled = true;
+        }
+        return cancelled || remaining.get() <= 0;
+    }
+
+    private void work() {
+        try {
+            int index;
+            while (!shouldStop() && (index = cursor.getAndIncrement()) < entries.size()) {
+                TextEntry entry = entries.get(index);
+                List<SearchResult> entryResults = new ArrayList<>(0);
+                perEntry.set(index, entryResults);
+                try {
+                    search.search(entry, result -> {
+                        if (remaining.getAndDecrement() <= 0) { return false; }
+                        synchronized (entryResults) {
+                            entryResults.add(result);
+                        }
+                        onResult.accept(result);
+                        return !shouldStop();
+                    });
+                } catch (IOException e) {
+                    System.err.println("Error reading file: " + entry.getFilePath());
+                }
+                searched.incrementAndGet();
+            }
+        } catch (Exception e) {
+            System.err.println("Error while searching: " + e);
+        } finally {
+            done.countDown();
+        }
+    }
+}
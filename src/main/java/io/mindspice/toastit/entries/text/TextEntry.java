@@ -6,6 +6,7 @@ import io.mindspice.toastit.entries.DatedEntry;
 import io.mindspice.toastit.entries.Entry;
 import io.mindspice.toastit.enums.EntryType;
 import io.mindspice.toastit.util.DateTimeUtil;
+import io.mindspice.toastit.util.EntryFiles;
 import io.mindspice.toastit.util.JSON;
 import io.mindspice.toastit.util.Util;
 
@@ -47,8 +48,7 @@ public record TextEntry(
         // Always write meta file on change
         Path metaFilePath = basePath.resolve(uuid + "." + entryType.name().toLowerCase() + ".meta");
         try {
-            String metaJson = JSON.writePretty(this);
-            Files.writeString(metaFilePath, metaJson);
+            EntryFiles.write(metaFilePath, this);
         } catch (IOException e) {
             throw new IllegalStateException("Failed to write "
                     + entryType.name().toLowerCase()
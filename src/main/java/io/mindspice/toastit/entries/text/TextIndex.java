@@ -0,0 +1,310 @@
+package io.mindspice.toastit.entries.text;
+
+import io.mindspice.toastit.entries.SearchResult;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+// In memory inverted index over note/journal files: term -> entry uuid -> sorted line numbers the term is on.
+// Results keep the line scan's shape (one SearchResult per matching line), only files with a candidate line are
+// read to return the line text. Query syntax:
+//   word1 word2   lines containing every word, any order
+//   word*         any word starting with "word"
+//   "word1 word2" the words next to each other in that order, the last may also be a prefix (word2*)
+// Terms are runs of letters/digits, lower cased. Searches take the read lock, updates the write lock.
+public class TextIndex {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Map<UUID, int[]>> postings = new TreeMap<>();
+    private final Map<UUID, Doc> docs = new HashMap<>();
+
+    private record Doc(TextEntry entry, long modified, Set<String> terms) { }
+
+    private record Tokenized(TextEntry entry, long modified, Map<String, int[]> lines) { }
+
+    private record QueryTerm(String text, boolean prefix) { }
+
+    // Tokenizes all files in parallel, then swaps them in under one write lock
+    public void build(Collection<TextEntry> entries) {
+        List<Tokenized> tokenized = entries.parallelStream().map(TextIndex::tokenizeFile).toList();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            docs.clear();
+            tokenized.forEach(this::insert);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void update(TextEntry entry) {
+        Tokenized tokenized = tokenizeFile(entry);
+        lock.writeLock().lock();
+        try {
+            removeDoc(entry.uuid());
+            insert(tokenized);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID uuid) {
+        lock.writeLock().lock();
+        try {
+            removeDoc(uuid);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Reindexes entries whose file mtime changed (or were renamed) and drops entries that are no longer present
+    public void sync(Collection<TextEntry> entries) {
+        List<TextEntry> stale = new ArrayList<>();
+        Set<UUID> removed;
+        lock.readLock().lock();
+        try {
+            removed = new HashSet<>(docs.keySet());
+            for (TextEntry entry : entries) {
+                removed.remove(entry.uuid());
+                Doc doc = docs.get(entry.uuid());
+                if (doc == null || !doc.entry().equals(entry) || doc.modified() != fileModified(entry)) {
+                    stale.add(entry);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        stale.parallelStream().forEach(this::update);
+        removed.forEach(this::remove);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<SearchResult> search(String query) {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    // Stops reading candidate files once limit lines matched
+    public List<SearchResult> search(String query, int limit) {
+        String trimmed = query.trim();
+        boolean phrase = trimmed.length() > 1 && trimmed.startsWith("\"") && trimmed.endsWith("\"");
+        List<QueryTerm> terms = parseQuery(phrase ? trimmed.substring(1, trimmed.length() - 1) : trimmed);
+        if (terms.isEmpty()) { return List.of(); }
+
+        Map<TextEntry, int[]> candidates = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            Map<UUID, int[]> matched = null;
+            for (QueryTerm term : terms) {
+                Map<UUID, int[]> termLines = linesFor(term);
+                matched = matched == null ? termLines : intersect(matched, termLines);
+                if (matched.isEmpty()) { return List.of(); }
+            }
+            matched.forEach((uuid, lines) -> candidates.put(docs.get(uuid).entry(), lines));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<TextEntry, int[]>> ordered = new ArrayList<>(candidates.entrySet());
+        ordered.sort(Map.Entry.comparingByKey(
+                Comparator.comparing(TextEntry::createdAt).thenComparing(TextEntry::uuid)
+        ));
+        List<SearchResult> results = new ArrayList<>();
+        for (var candidate : ordered) {
+            if (results.size() >= limit) { break; }
+            readMatches(candidate.getKey(), candidate.getValue(), phrase ? terms : null, results);
+        }
+        return results.size() > limit ? List.copyOf(results.subList(0, limit)) : results;
+    }
+
+    // Index
+
+    private static Tokenized tokenizeFile(TextEntry entry) {
+        Map<String, List<Integer>> lines = new HashMap<>();
+        long modified = fileModified(entry);
+        try {
+            String[] fileLines = readLines(entry);
+            for (int i = 0; i < fileLines.length; ++i) {
+                for (String term : new HashSet<>(tokenize(fileLines[i]))) {
+                    lines.computeIfAbsent(term, t -> new ArrayList<>()).add(i);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error indexing file: " + entry.getFilePath());
+        }
+        Map<String, int[]> termLines = new HashMap<>(lines.size());
+        lines.forEach((term, list) -> termLines.put(term, list.stream().mapToInt(Integer::intValue).toArray()));
+        return new Tokenized(entry, modified, termLines);
+    }
+
+    private void insert(Tokenized tokenized) {
+        UUID uuid = tokenized.entry().uuid();
+        tokenized.lines().forEach((term, lines) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(uuid, lines));
+        docs.put(uuid, new Doc(tokenized.entry(), tokenized.modified(), tokenized.lines().keySet()));
+    }
+
+    private void removeDoc(UUID uuid) {
+        Doc doc = docs.remove(uuid);
+        if (doc == null) { return; }
+        for (String term : doc.terms()) {
+            Map<UUID, int[]> termDocs = postings.get(term);
+            if (termDocs != null) {
+                termDocs.remove(uuid);
+                if (termDocs.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    // Query
+
+    private static List<QueryTerm> parseQuery(String query) {
+        List<QueryTerm> terms = new ArrayList<>();
+        for (String word : query.split("\\s+")) {
+            boolean prefix = word.endsWith("*");
+            List<String> tokens = tokenize(word);
+            for (int i = 0; i < tokens.size(); ++i) {
+                terms.add(new QueryTerm(tokens.get(i), prefix && i == tokens.size() - 1));
+            }
+        }
+        return terms;
+    }
+
+    private Map<UUID, int[]> linesFor(QueryTerm term) {
+        if (!term.prefix()) {
+            return postings.getOrDefault(term.text(), Map.of());
+        }
+        Map<UUID, int[]> merged = new HashMap<>();
+        var prefixed = postings.subMap(term.text(), true, term.text() + Character.MAX_VALUE, false);
+        for (Map<UUID, int[]> termDocs : prefixed.values()) {
+            termDocs.forEach((uuid, lines) -> merged.merge(uuid, lines, TextIndex::union));
+        }
+        return merged;
+    }
+
+    private static Map<UUID, int[]> intersect(Map<UUID, int[]> a, Map<UUID, int[]> b) {
+        Map<UUID, int[]> smaller = a.size() <= b.size() ? a : b;
+        Map<UUID, int[]> larger = smaller == a ? b : a;
+        Map<UUID, int[]> result = new HashMap<>();
+        smaller.forEach((uuid, lines) -> {
+            int[] other = larger.get(uuid);
+            if (other != null) {
+                int[] both = intersect(lines, other);
+                if (both.length > 0) {
+                    result.put(uuid, both);
+                }
+            }
+        });
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[n++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    // Reads the file once for the candidate lines, phrase terms (null for word queries) are checked for adjacency
+    private static void readMatches(TextEntry entry, int[] lines, List<QueryTerm> phrase, List<SearchResult> results) {
+        try {
+            String[] fileLines = readLines(entry);
+            for (int line : lines) {
+                if (line < fileLines.length && (phrase == null || containsPhrase(tokenize(fileLines[line]), phrase))) {
+                    results.add(new SearchResult(fileLines[line], entry));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + entry.getFilePath());
+        }
+    }
+
+    private static boolean containsPhrase(List<String> tokens, List<QueryTerm> phrase) {
+        for (int start = 0; start + phrase.size() <= tokens.size(); ++start) {
+            boolean match = true;
+            for (int i = 0; i < phrase.size() && match; ++i) {
+                QueryTerm term = phrase.get(i);
+                String token = tokens.get(start + i);
+                match = term.prefix() ? token.startsWith(term.text()) : token.equals(term.text());
+            }
+            if (match) { return true; }
+        }
+        return false;
+    }
+
+    // Util
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); ++i) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static String[] readLines(TextEntry entry) throws IOException {
+        // Same line breaks as Files.readAllLines, malformed bytes are replaced rather than failing the file
+        return new String(Files.readAllBytes(entry.getFilePath()), StandardCharsets.UTF_8).split("\r\n|\n|\r", -1);
+    }
+
+    private static long fileModified(TextEntry entry) {
+        try {
+            return Files.getLastModifiedTime(entry.getFilePath()).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
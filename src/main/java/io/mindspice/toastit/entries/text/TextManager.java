@@ -1,8 +1,12 @@
 package io.mindspice.toastit.entries.text;
 
 import io.mindspice.toastit.App;
+import io.mindspice.toastit.entries.EntryStore;
 import io.mindspice.toastit.entries.SearchResult;
 import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.enums.SearchBackend;
+import io.mindspice.toastit.sqlite.DBConnection;
+import io.mindspice.toastit.sqlite.SearchHit;
 import io.mindspice.toastit.util.DateTimeUtil;
 import io.mindspice.toastit.util.Settings;
 
@@ -11,12 +15,13 @@ import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 
 public class TextManager {
-
-    public final List<TextEntry> entries = new CopyOnWriteArrayList<>();
+    public final EntryStore<TextEntry> entries = new EntryStore<>(TextEntry::createdAt);
+    public final TextIndex textIndex = new TextIndex();
     public EntryType type;
     public volatile TextEntry dailyJournal;
 
@@ -29,6 +34,23 @@ public class TextManager {
             throw new IllegalStateException("Invalid Entry Type");
         }
         this.type = type;
+        // The sqlite index is kept whatever the backend, global search reads it for every entry type
+        try {
+            syncSearchIndex();
+        } catch (IOException e) {
+            System.err.println("Error syncing search index: " + e.getMessage());
+        }
+        if (Settings.TEXT_SEARCH_BACKEND == SearchBackend.INDEX) {
+            textIndex.build(entries);
+        }
+        if (Settings.SEARCH_INDEX_SYNC_INV_MIN > 0) {
+            App.instance().getExec().scheduleWithFixedDelay(
+                    this::syncIndexes,
+                    Settings.SEARCH_INDEX_SYNC_INV_MIN,
+                    Settings.SEARCH_INDEX_SYNC_INV_MIN,
+                    TimeUnit.MINUTES
+            );
+        }
     }
 
     public List<TextEntry> getEntries() {
@@ -47,12 +69,14 @@ public class TextManager {
         App.instance().getDatabase().upsertNote(note);
         entries.add(note);
         note.flushToDisk();
+        reindexEntry(note);
     }
 
     private void addJournal(TextEntry journal) throws IOException {
         App.instance().getDatabase().upsertJournal(journal);
         entries.add(journal);
         journal.flushToDisk();
+        reindexEntry(journal);
     }
 
     public void updateEntry(TextEntry entry) {
@@ -79,9 +103,9 @@ public class TextManager {
     private void updateNote(TextEntry note) {
         try {
             App.instance().getDatabase().upsertNote(note);
-            entries.removeIf(n -> n.uuid() == note.uuid());
-            entries.add(note);
+            entries.put(note);
             note.flushToDisk();
+            reindexEntry(note);
         } catch (IOException e) {
             System.err.println("Error updating note: " + note.uuid() + " | " + Arrays.toString(e.getStackTrace()));
         }
@@ -90,9 +114,9 @@ public class TextManager {
     private void updateJournal(TextEntry journal) {
         try {
             App.instance().getDatabase().upsertJournal(journal);
-            entries.removeIf(j -> j.uuid() == journal.uuid());
-            entries.add(journal);
+            entries.put(journal);
             journal.flushToDisk();
+            reindexEntry(journal);
         } catch (IOException e) {
             System.err.println("Error updating journal: " + journal.uuid() + " | " + Arrays.toString(e.getStackTrace()));
         }
@@ -108,7 +132,8 @@ public class TextManager {
 
     private void deleteNote(TextEntry note) {
         try {
-            entries.removeIf(n -> n.uuid() == note.uuid());
+            entries.remove(note.uuid());
+            unindexEntry(note);
             Files.delete(note.getFilePath());
         } catch (IOException e) {
             System.err.println("Error deleting note: " + note.uuid() + " | " + Arrays.toString(e.getStackTrace()));
@@ -117,7 +142,8 @@ public class TextManager {
 
     private void deleteJournal(TextEntry journal) {
         try {
-            entries.removeIf(n -> n.uuid() == journal.uuid());
+            entries.remove(journal.uuid());
+            unindexEntry(journal);
             Files.delete(journal.getFilePath());
         } catch (IOException e) {
             System.err.println("Error deleting Journal: " + journal.uuid() + " | " + Arrays.toString(e.getStackTrace()));
@@ -134,7 +160,8 @@ public class TextManager {
 
     private void archiveNote(TextEntry note) {
         try {
-            entries.removeIf(n -> n.uuid() == note.uuid());
+            entries.remove(note.uuid());
+            unindexEntry(note);
             App.instance().getDatabase().archiveNote(note.uuid(), true);
         } catch (IOException e) {
             System.err.println("Error deleting note: " + note.uuid() + " | " + Arrays.toString(e.getStackTrace()));
@@ -143,52 +170,138 @@ public class TextManager {
 
     private void archiveJournal(TextEntry journal) {
         try {
-            entries.removeIf(n -> n.uuid() == journal.uuid());
+            entries.remove(journal.uuid());
+            unindexEntry(journal);
             App.instance().getDatabase().archiveJournal(journal.uuid(), true);
         } catch (IOException e) {
             System.err.println("Error deleting Journal: " + journal.uuid() + " | " + Arrays.toString(e.getStackTrace()));
         }
     }
 
-    public List<SearchResult> searchEntries(String searchString) {
-        return searchForEntries(searchString, entries);
-    }
-
-    private List<SearchResult> searchForEntries(String searchString, List<TextEntry> searchList) {
-        if (Settings.THREADED_SEARCH && searchList.size() > 10) {
-            try (var exec = Executors.newVirtualThreadPerTaskExecutor()) {
-                return searchList.stream()
-                        .map(entry -> exec.submit(() -> searchFiles(searchString, entry))).toList()
-                        .parallelStream().map(future -> {
-                            try {
-                                return future.get(Settings.SEARCH_TIMEOUT_SEC, TimeUnit.SECONDS);
-                            } catch (InterruptedException | TimeoutException | ExecutionException e) {
-                                Thread.currentThread().interrupt();
-                                System.err.println("Error while searching: " + e);
-                                return new ArrayList<SearchResult>(0);
-                            }
-                        }).flatMap(List::stream).toList();
+    // Called once the entry's file may have changed, e.g. after the editor exits
+    public void reindexEntry(TextEntry entry) {
+        try {
+            App.instance().getDatabase().updateSearchIndex(List.of(entry));
+        } catch (IOException e) {
+            System.err.println("Error indexing entry: " + entry.uuid() + " | " + e.getMessage());
+        }
+        if (Settings.TEXT_SEARCH_BACKEND == SearchBackend.INDEX) {
+            textIndex.update(entry);
+        }
+    }
+
+    private void unindexEntry(TextEntry entry) {
+        try {
+            App.instance().getDatabase().removeFromSearchIndex(List.of(entry.uuid()));
+        } catch (IOException e) {
+            System.err.println("Error removing entry from index: " + entry.uuid() + " | " + e.getMessage());
+        }
+        if (Settings.TEXT_SEARCH_BACKEND == SearchBackend.INDEX) {
+            textIndex.remove(entry.uuid());
+        }
+    }
+
+    // Saves reindex their own entry, this catches edits made outside the shell (editors that return before the file
+    // is saved, files changed by other programs). Runs every SEARCH_INDEX_SYNC_INV_MIN, never per search.
+    private void syncIndexes() {
+        try {
+            syncSearchIndex();
+        } catch (IOException e) {
+            System.err.println("Error syncing search index: " + e.getMessage());
+        }
+        if (Settings.TEXT_SEARCH_BACKEND == SearchBackend.INDEX) {
+            textIndex.sync(entries); // Only stats unchanged files
+        }
+    }
+
+    // Reindexes entries whose file changed since it was indexed and drops documents of entries that are no longer
+    // loaded. Only stats the files, unchanged entries are not read.
+    public void syncSearchIndex() throws IOException {
+        Map<UUID, Long> indexed = App.instance().getDatabase().getSearchIndexState(type);
+        List<TextEntry> stale = new ArrayList<>();
+        for (TextEntry entry : entries) {
+            Long modified = indexed.remove(entry.uuid());
+            if (modified == null || modified != fileModified(entry)) {
+                stale.add(entry);
             }
-        } else {
-            return searchList.stream().map(entry -> searchFiles(searchString, entry)).flatMap(List::stream).toList();
         }
+        App.instance().getDatabase().updateSearchIndex(stale);
+        App.instance().getDatabase().removeFromSearchIndex(indexed.keySet());
     }
 
-    public List<SearchResult> searchFiles(String searchString, TextEntry entry) {
-        List<SearchResult> results = new ArrayList<>();
+    private static long fileModified(TextEntry entry) {
         try {
-            List<String> lines = Files.readAllLines(entry.getFilePath());
-            lines.forEach(line -> {
-                if (line.contains(searchString)) {
-                    results.add(new SearchResult(line, entry));
+            return Files.getLastModifiedTime(entry.getFilePath()).toMillis();
+        } catch (IOException e) {
+            return 0; // Missing file, indexed as empty
+        }
+    }
+
+    public List<SearchResult> searchEntries(String searchString) {
+        return startSearch(searchString, result -> { }).await();
+    }
+
+    // Index backends answer before returning, a scan runs in the background and streams matches to onResult.
+    // Input using the query syntax (see SearchQuery) runs as a plan instead, plain input and input the syntax can't
+    // parse keep the backend as a literal search.
+    public SearchTask startSearch(String searchString, Consumer<SearchResult> onResult) {
+        SearchQuery query = SearchQuery.parseOrLiteral(searchString);
+        if (query.hasMetadataFilter() || !query.isWordsOnly()) {
+            return startQuery(query, onResult);
+        }
+        return switch (Settings.TEXT_SEARCH_BACKEND) {
+            case FTS -> {
+                try {
+                    yield SearchTask.completed(searchIndex(searchString), onResult);
+                } catch (IOException e) {
+                    System.err.println("Index search failed, falling back to file scan: " + e.getMessage());
+                    yield SearchTask.start(FileSearch.of(searchString), entries, onResult);
                 }
-            });
+            }
+            case INDEX -> SearchTask.completed(textIndex.search(searchString, Settings.SEARCH_MAX_RESULTS), onResult);
+            case SCAN -> SearchTask.start(FileSearch.of(searchString), entries, onResult);
+        };
+    }
+
+    // Tag/date filters run first as a sqlite query, only the entries left are scanned with the compiled line
+    // filter. Without text filters the matching entries are the results (one per entry) and no file is read.
+    private SearchTask startQuery(SearchQuery query, Consumer<SearchResult> onResult) {
+        List<TextEntry> candidates = query.hasMetadataFilter() ? filterByMetadata(query) : entries;
+        if (!query.hasTextFilter()) {
+            return SearchTask.completed(
+                    candidates.stream().limit(Settings.SEARCH_MAX_RESULTS).map(e -> new SearchResult(e.name(), e)).toList(),
+                    onResult
+            );
+        }
+        return SearchTask.start(query.fileSearch(), candidates, onResult);
+    }
+
+    private List<TextEntry> filterByMetadata(SearchQuery query) {
+        try {
+            Set<UUID> matched = App.instance().getDatabase()
+                    .filterTextEntries(type, query.tags(), query.after(), query.before());
+            return entries.stream().filter(e -> matched.contains(e.uuid())).toList();
         } catch (IOException e) {
-            System.err.println("Error reading file: " + entry.getFilePath());
+            System.err.println("Metadata filter failed, filtering in memory: " + e.getMessage());
+            return entries.stream().filter(query::matchesMetadata).toList();
         }
-        return results;
     }
 
+    private List<SearchResult> searchIndex(String searchString) throws IOException {
+        String matchQuery = DBConnection.toMatchQuery(searchString);
+        if (matchQuery == null) { return List.of(); }
+        List<SearchResult> results = new ArrayList<>();
+        for (SearchHit hit : App.instance().getDatabase().searchText(type, matchQuery, Settings.SEARCH_MAX_RESULTS)) {
+            TextEntry entry = entries.get(hit.uuid());
+            if (entry != null) {
+                results.add(new SearchResult(hit.snippet(), entry));
+            }
+        }
+        return results;
+    }
 
+    public List<SearchResult> searchFiles(String searchString, TextEntry entry) {
+        return FileSearch.of(searchString).search(List.of(entry), Integer.MAX_VALUE);
+    }
 }
 
@@ -0,0 +1,7 @@
+package io.mindspice.toastit.enums;
+
+// Format new entry meta files are written in, see EntryFiles. Either format is read whatever the setting
+public enum EntryFileFormat {
+    JSON,  // Pretty printed, readable and editable by hand
+    BINARY // BinaryCodec, smaller and decoded without reflection
+}
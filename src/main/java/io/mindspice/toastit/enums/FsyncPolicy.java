@@ -0,0 +1,9 @@
+package io.mindspice.toastit.enums;
+
+// How far entry file writes are forced to disk before they return, see DurableWriter. Every policy writes a temp
+// file and renames it over the entry, so a crash never leaves a half written file, only the last write may be lost
+public enum FsyncPolicy {
+    NONE,     // Left to the OS to flush, survives the app crashing but not power loss
+    FILE,     // The file contents are forced before the rename
+    DIRECTORY // FILE, then the directory is forced so the rename itself is durable (ignored where unsupported)
+}
@@ -0,0 +1,8 @@
+package io.mindspice.toastit.enums;
+
+// How note and journal searches are answered, see TextManager.searchEntries
+public enum SearchBackend {
+    SCAN, // Read every file and match lines, uses THREADED_SEARCH
+    FTS,  // sqlite full text index, ranked with snippets
+    INDEX // In memory inverted index (TextIndex), built at startup, returns matching lines like SCAN
+}
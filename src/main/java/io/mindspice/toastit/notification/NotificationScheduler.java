@@ -0,0 +1,223 @@
+package io.mindspice.toastit.notification;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+// Single thread reminder scheduler shared by the managers. Reminders sit in one priority queue ordered by due
+// time and are indexed by entry uuid then due time, there is at most one pending notification per reminder:
+// scheduling an existing (uuid, time) again only swaps its action, so refreshes can re-submit everything
+// without growing the queue. Cancel only marks the handle, cancelled handles are dropped when they reach the
+// head or purged in bulk once they make up half the queue. Due actions are handed to the dispatcher so a slow
+// notify command can't delay the next one.
+public class NotificationScheduler {
+    private static final long MAX_WAIT_MS = 60_000; // Re-check at least every minute in case the wall clock moves
+    private static final int MIN_PURGE = 64;
+
+    private final Executor dispatcher;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition headChanged = lock.newCondition();
+    private final PriorityQueue<ScheduledNotification> queue = new PriorityQueue<>(
+            Comparator.comparingLong((ScheduledNotification sn) -> sn.dueMillis).thenComparingLong(sn -> sn.sequence)
+    );
+    private final Map<UUID, Map<Long, ScheduledNotification>> byUUID = new HashMap<>();
+    private final Thread worker;
+    private long sequence = 0;
+    private int cancelledInQueue = 0;
+    private long scheduledCount = 0;
+    private long deduplicatedCount = 0;
+    private long cancelledCount = 0;
+    private long purgeCount = 0;
+    private long firedCount = 0;
+    private volatile boolean running = true;
+
+    public NotificationScheduler(Executor dispatcher) {
+        this.dispatcher = dispatcher;
+        this.worker = Thread.ofPlatform().name("notification-scheduler").daemon().start(this::run);
+    }
+
+    public ScheduledNotification schedule(UUID uuid, LocalDateTime time, Runnable action) {
+        long dueMillis = time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        lock.lock();
+        try {
+            Map<Long, ScheduledNotification> reminders = byUUID.computeIfAbsent(uuid, k -> new HashMap<>(4));
+            ScheduledNotification existing = reminders.get(dueMillis);
+            if (existing != null) {
+                existing.action = action;
+                deduplicatedCount++;
+                return existing;
+            }
+            var sn = new ScheduledNotification(uuid, time, dueMillis, sequence++, action, this);
+            queue.add(sn);
+            reminders.put(dueMillis, sn);
+            scheduledCount++;
+            if (queue.peek() == sn) {
+                headChanged.signal();
+            }
+            return sn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ScheduledNotification reschedule(ScheduledNotification sn, LocalDateTime time) {
+        cancel(sn);
+        return schedule(sn.uuid(), time, sn.action);
+    }
+
+    public boolean cancel(ScheduledNotification sn) {
+        lock.lock();
+        try {
+            if (sn.state != ScheduledNotification.State.PENDING) { return false; }
+            sn.state = ScheduledNotification.State.CANCELLED;
+            removeFromIndex(sn);
+            markCancelled(1);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int cancelAll(UUID uuid) {
+        lock.lock();
+        try {
+            Map<Long, ScheduledNotification> pending = byUUID.remove(uuid);
+            if (pending == null) { return 0; }
+            pending.values().forEach(sn -> sn.state = ScheduledNotification.State.CANCELLED);
+            markCancelled(pending.size());
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<ScheduledNotification> getPending(UUID uuid) {
+        lock.lock();
+        try {
+            return List.copyOf(byUUID.getOrDefault(uuid, Map.of()).values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Pending reminders, excludes cancelled handles still waiting to be purged
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size() - cancelledInQueue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queueSize() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public record Metrics(
+            int pending, // Reminders waiting to fire
+            int queueDepth, // Includes cancelled handles not yet purged
+            int indexedEntries,
+            long scheduled,
+            long deduplicated,
+            long cancelled,
+            long fired,
+            long purges
+    ) { }
+
+    public Metrics metrics() {
+        lock.lock();
+        try {
+            return new Metrics(
+                    queue.size() - cancelledInQueue, queue.size(), byUUID.size(), scheduledCount,
+                    deduplicatedCount, cancelledCount, firedCount, purgeCount
+            );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void removeFromIndex(ScheduledNotification sn) {
+        Map<Long, ScheduledNotification> reminders = byUUID.get(sn.uuid());
+        if (reminders != null) {
+            reminders.remove(sn.dueMillis, sn);
+            if (reminders.isEmpty()) {
+                byUUID.remove(sn.uuid());
+            }
+        }
+    }
+
+    private void markCancelled(int count) {
+        cancelledInQueue += count;
+        cancelledCount += count;
+        if (cancelledInQueue >= MIN_PURGE && cancelledInQueue * 2 >= queue.size()) {
+            queue.removeIf(ScheduledNotification::isCancelled);
+            cancelledInQueue = 0;
+            purgeCount++;
+        }
+    }
+
+    private void run() {
+        while (running) {
+            ScheduledNotification due;
+            lock.lock();
+            try {
+                due = queue.peek();
+                while (due != null && due.state == ScheduledNotification.State.CANCELLED) {
+                    queue.poll();
+                    cancelledInQueue--;
+                    due = queue.peek();
+                }
+                if (due == null) {
+                    headChanged.await();
+                    continue;
+                }
+                long wait = due.dueMillis - System.currentTimeMillis();
+                if (wait > 0) {
+                    headChanged.await(Math.min(wait, MAX_WAIT_MS), TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                queue.poll();
+                due.state = ScheduledNotification.State.FIRED;
+                removeFromIndex(due);
+                firedCount++;
+            } catch (InterruptedException e) {
+                continue; // Loop condition handles shutdown
+            } finally {
+                lock.unlock();
+            }
+            dispatch(due);
+        }
+    }
+
+    private void dispatch(ScheduledNotification sn) {
+        Runnable task = () -> {
+            try {
+                sn.action.run();
+            } catch (Exception e) {
+                System.err.printf("Error emitting notification for: %s, Error: %s%n", sn.uuid(), e);
+            }
+        };
+        try {
+            dispatcher.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+}
@@ -2,16 +2,52 @@ package io.mindspice.toastit.notification;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
-import java.util.concurrent.ScheduledFuture;
 
 
-public record ScheduledNotification(
-        UUID uuid,
-        LocalDateTime time,
-        ScheduledFuture<?> scheduledFuture
-) {
+// Handle for a reminder queued on the NotificationScheduler, one per (uuid, time) while pending
+public final class ScheduledNotification {
+    private final UUID uuid;
+    private final LocalDateTime time;
+    private final NotificationScheduler scheduler;
+    final long dueMillis;
+    final long sequence;
+    volatile Runnable action;
+    volatile State state = State.PENDING;
+
+    enum State { PENDING, CANCELLED, FIRED }
+
+    ScheduledNotification(UUID uuid, LocalDateTime time, long dueMillis, long sequence, Runnable action,
+            NotificationScheduler scheduler) {
+        this.uuid = uuid;
+        this.time = time;
+        this.dueMillis = dueMillis;
+        this.sequence = sequence;
+        this.action = action;
+        this.scheduler = scheduler;
+    }
+
+    public UUID uuid() {
+        return uuid;
+    }
+
+    public LocalDateTime time() {
+        return time;
+    }
 
     public void cancel() {
-        scheduledFuture.cancel(false);
+        scheduler.cancel(this);
+    }
+
+    public boolean isPending() {
+        return state == State.PENDING;
+    }
+
+    public boolean isCancelled() {
+        return state == State.CANCELLED;
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduledNotification[uuid=" + uuid + ", time=" + time + ", state=" + state + "]";
     }
 }
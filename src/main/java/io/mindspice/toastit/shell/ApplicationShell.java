@@ -1,5 +1,6 @@
 package io.mindspice.toastit.shell;
 
+import io.mindspice.toastit.App;
 import io.mindspice.toastit.shell.evaluators.DirectoryEval;
 import io.mindspice.kawautils.wrappers.KawaInstance;
 import io.mindspice.toastit.util.Util;
@@ -17,6 +18,8 @@ import org.jline.reader.impl.history.DefaultHistory;
 import org.jline.terminal.Terminal;
 import org.jline.utils.InfoCmp;
 import io.mindspice.toastit.util.Settings;
+import io.mindspice.toastit.util.TableConfig;
+import io.mindspice.toastit.util.TableUtil;
 
 import java.io.File;
 import java.io.IOException;
@@ -103,6 +106,7 @@ public class ApplicationShell {
                         }
                         case String s when s.startsWith("clear") -> onClear(terminal);
                         case String s when s.startsWith("help") -> onHelp(output);
+                        case String s when s.startsWith("find ") -> output.write(onFind(s.substring(5)).getBytes());
                         default -> {
                             for (var mode : modes) {
                                 if (mode.test(inputLine)) {
@@ -194,6 +198,19 @@ public class ApplicationShell {
         return customWidgets;
     }
 
+    // Global search, every entry type from any mode
+    public String onFind(String query) {
+        try {
+            return TableUtil.generateTableWithHeader(
+                    "Search: " + query.trim(),
+                    App.instance().getGlobalSearch().search(query),
+                    TableConfig.GLOBAL_SEARCH_TABLE
+            ) + "\n";
+        } catch (IOException e) {
+            return "Search failed: " + e.getMessage() + "\n";
+        }
+    }
+
     public void onHelp(OutputStream output) {
 
     }
@@ -4,6 +4,7 @@ import io.mindspice.mindlib.data.tuples.Pair;
 import io.mindspice.toastit.entries.task.TaskEntry;
 import io.mindspice.toastit.util.Util;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.*;
@@ -21,8 +22,11 @@ public class InputPrompt<T> {
     }
 
     private List<Pair<Integer, T>> createdIndexed(List<T> items) {
-        return IntStream.range(0, items.size())
-                .mapToObj(i -> Pair.of(i, items.get(i))).collect(Collectors.toList());
+        // One copy to index (toArray, a single snapshot for an EntryStore), manager lists can change between size()
+        // and get(i) under a background refresh
+        List<T> snapshot = new ArrayList<>(items);
+        return IntStream.range(0, snapshot.size())
+                .mapToObj(i -> Pair.of(i, snapshot.get(i))).collect(Collectors.toList());
     }
 
     public void resetFiltered() {
@@ -16,6 +16,7 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.IntStream;
 
 
@@ -35,7 +36,8 @@ public class EventEval extends ShellEvaluator<EventEval> {
         commands.addAll(List.of(
                 ShellCommand.of("new", EventEval::createNewEvent),
                 ShellCommand.of(Set.of("manage", "manager"), EventEval::manageEvents),
-                ShellCommand.of("remove past", EventEval::clearPast)
+                ShellCommand.of("remove past", EventEval::clearPast),
+                ShellCommand.of("more past", EventEval::loadMorePast)
         ));
     }
 
@@ -71,6 +73,19 @@ public class EventEval extends ShellEvaluator<EventEval> {
         return modeDisplay();
     }
 
+    public String loadMorePast(String input) {
+        try {
+            int loaded = eventManager.loadMorePastEvents();
+            clearAndPrint(loaded == 0 ? "No older events\n" : "Loaded " + loaded + " older events\n");
+            return modeDisplay();
+        } catch (IOException e) {
+            System.err.println(Arrays.toString(e.getStackTrace()));
+            clearScreen();
+            printLnToTerminal(e.getMessage() + "\n");
+            return modeDisplay();
+        }
+    }
+
     public String createNewEvent(String input) {
         EventEntry.Builder eventBuilder = EventEntry.builder();
 
@@ -105,6 +120,7 @@ public class EventEval extends ShellEvaluator<EventEval> {
             eventBuilder.reminders = promptReminder(eventBuilder.startTime);
 
             printTable.run();
+            printOverlaps(eventBuilder.startTime, eventBuilder.endTime, null);
             boolean confirmed = false;
             while (!confirmed) {
                 confirmed = confirmPrompt("Finished? (No to edit)");
@@ -160,11 +176,24 @@ public class EventEval extends ShellEvaluator<EventEval> {
         }
 
         printTable.run();
+        printOverlaps(eventBuilder.startTime, eventBuilder.endTime, event.uuid());
         promptInput("Updated Event, Press Enter To Continue...");
         return eventBuilder.build();
 
     }
 
+    // Lists the upcoming events sharing time with [start, end), answered by the future events' interval index
+    private void printOverlaps(LocalDateTime start, LocalDateTime end, UUID self) {
+        if (start == null || end == null) { return; }
+        List<String> names = eventManager.getFutureEventsOverlapping(start, end).stream()
+                .filter(e -> !e.uuid().equals(self))
+                .map(EventEntry::name)
+                .toList();
+        if (!names.isEmpty()) {
+            printLnToTerminal("Overlaps with: " + String.join(", ", names) + "\n");
+        }
+    }
+
 
 
     public String manageEvents(String input) {
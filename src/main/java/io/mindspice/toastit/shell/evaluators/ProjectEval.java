@@ -301,6 +301,7 @@ public class ProjectEval extends ShellEvaluator<ProjectEval> {
                         .validateInputLength(input, 2)
                         .validateAndGetIndex(input[1])
                         .itemUpdate(taskEval::updateTask)
+                        .itemConsumer(taskEval.taskManager::updateTask)
                         .display(entry -> "Updated: " + entry.name());
 
                 default -> output = "Invalid input or index";
@@ -506,11 +507,12 @@ public class ProjectEval extends ShellEvaluator<ProjectEval> {
                                     .validateInputLength(userInput, 3)
                                     .validateAndGetIndex(userInput[2])
                                     .itemUpdate(item -> item.asStarted(LocalDateTime.now()))
+                                    .itemConsumer(taskEval.taskManager::updateTask)
                                     .display(item -> "Started Task: " + item.name());
 
                             case String s1 when s1.startsWith("all") -> {
                                 project = project.asStarted(LocalDateTime.now());
-                                taskPrompt.updateAll(item -> item.asStarted(LocalDateTime.now()));
+                                taskPrompt.updateAll(item -> saveTask(item.asStarted(LocalDateTime.now())));
                                 output = "Started project and all tasks";
                             }
 
@@ -552,6 +554,7 @@ public class ProjectEval extends ShellEvaluator<ProjectEval> {
                                     .validateInputLength(userInput, 3)
                                     .validateAndGetIndex(userInput[2])
                                     .itemUpdate(taskEval::updateTask)
+                                    .itemConsumer(taskEval.taskManager::updateTask)
                                     .display(__ -> "Updated Task: " + userInput[2]);
 
                             case String s1 when s1.startsWith("desc") -> {
@@ -578,7 +581,7 @@ public class ProjectEval extends ShellEvaluator<ProjectEval> {
                             }
 
                             case String s1 when s1.startsWith("all") -> {
-                                taskPrompt.updateAll(t -> t.asStarted(LocalDateTime.now()));
+                                taskPrompt.updateAll(t -> saveTask(t.asStarted(LocalDateTime.now())));
                                 output = "Started All SubTasks";
                             }
 
@@ -586,6 +589,7 @@ public class ProjectEval extends ShellEvaluator<ProjectEval> {
                                     .validateInputLength(userInput, 2)
                                     .validateAndGetIndex(userInput[1])
                                     .itemUpdate(i -> i.asStarted(LocalDateTime.now()))
+                                    .itemConsumer(taskEval.taskManager::updateTask)
                                     .display(__ -> "Started Task" + userInput[1]);
 
                             default -> output = "Invalid index or input";
@@ -596,7 +600,7 @@ public class ProjectEval extends ShellEvaluator<ProjectEval> {
                     case String s when s.startsWith("complete") & userInput.length > 1 -> {
                         switch (userInput[1]) {
                             case String s1 when s1.startsWith("all") -> {
-                                taskPrompt.updateAll(i -> i.asCompleted(LocalDateTime.now()));
+                                taskPrompt.updateAll(i -> saveTask(i.asCompleted(LocalDateTime.now())));
                                 output = "Completed All SubTasks";
                             }
 
@@ -604,6 +608,7 @@ public class ProjectEval extends ShellEvaluator<ProjectEval> {
                                     .validateInputLength(userInput, 2)
                                     .validateAndGetIndex(userInput[1])
                                     .itemUpdate(i -> i.asCompleted(LocalDateTime.now()))
+                                    .itemConsumer(taskEval.taskManager::updateTask)
                                     .display(__ -> "Completed SubTask " + userInput[1]);
 
                             default -> output = "Invalid index or input";
@@ -645,6 +650,13 @@ public class ProjectEval extends ShellEvaluator<ProjectEval> {
         }
     }
 
+    // Project tasks are their own rows, a task changed from a project is saved like any other task edit
+    private TaskEntry saveTask(TaskEntry task) {
+        taskEval.taskManager.updateTask(task);
+        return task;
+    }
+
+    // taskCreator saves each new task through the task manager
     public List<TaskEntry> promptTasks(List<TaskEntry> tasks) throws IOException {
         do {
             String table = TableUtil.generateKeyPairTable("Tasks", tasks, (__) -> "Task ", TaskEntry::name);
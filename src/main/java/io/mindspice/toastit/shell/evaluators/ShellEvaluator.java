@@ -1,6 +1,7 @@
 package io.mindspice.toastit.shell.evaluators;
 
 import io.mindspice.mindlib.data.tuples.Pair;
+import io.mindspice.toastit.App;
 import io.mindspice.toastit.entries.DatedEntry;
 import io.mindspice.toastit.enums.NotificationLevel;
 import io.mindspice.toastit.notification.Reminder;
@@ -19,7 +20,10 @@ import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.function.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -326,8 +330,10 @@ public abstract class ShellEvaluator<T> {
         String input = lineReader.readLine("Enter Tags(seperated by spaces): ").trim();
 
         String[] inputTags = input.split("\\s+");
+        Set<String> knownTags = knownTags();
         for (var tag : inputTags) {
-            if (!Settings.TAG_MAP.containsKey(input)) {
+            if (tag.isEmpty()) { continue; }
+            if (!knownTags.contains(tag.toLowerCase())) {
                 boolean confirm = confirmPrompt(String.format("Tag: %s unknown include anyway?", tag));
                 if (confirm) {
                     tags.add(tag);
@@ -339,6 +345,18 @@ public abstract class ShellEvaluator<T> {
         return tags;
     }
 
+    // Configured tags plus every tag already on an entry, lower cased
+    private Set<String> knownTags() {
+        Set<String> known = new HashSet<>();
+        Settings.TAG_MAP.keySet().forEach(tag -> known.add(tag.toLowerCase()));
+        try {
+            App.instance().getDatabase().getTagCounts().keySet().forEach(tag -> known.add(tag.toLowerCase()));
+        } catch (IOException e) {
+            System.err.println("Error loading tags: " + e.getMessage());
+        }
+        return known;
+    }
+
     public boolean confirmPrompt(String prompt) {
         while (true) {
             String input = lineReader.readLine(prompt + (prompt.contains("(y/n)")
@@ -409,8 +427,16 @@ public abstract class ShellEvaluator<T> {
                 if (userInput.length < 3) { // Need to validate here since index is passed to prompt
                     return "Invalid input";
                 }
+                Predicate<U> tagged;
+                try {
+                    Set<UUID> uuids = App.instance().getDatabase().getTaggedUUIDs(userInput[2]);
+                    tagged = t -> uuids.contains(t.uuid());
+                } catch (IOException e) {
+                    System.err.println("Error querying tag, filtering in memory: " + e.getMessage());
+                    tagged = t -> t.tags().stream().anyMatch(userInput[2]::equalsIgnoreCase);
+                }
                 return prompt.create()
-                        .filter(t -> t.tags().contains(userInput[2]))
+                        .filter(tagged)
                         .display(__ -> "Filtered Tag: " + userInput[2]);
             }
 
@@ -440,8 +466,9 @@ public abstract class ShellEvaluator<T> {
     }
 
     public <U> List<Pair<Integer, U>> getIndexedList(final List<U> items) {
-        return IntStream.range(0, items.size())
-                .mapToObj(i -> Pair.of(i, items.get(i))).collect(Collectors.toList());
+        List<U> snapshot = new ArrayList<>(items); // Stays in bounds if a refresh changes the list meanwhile
+        return IntStream.range(0, snapshot.size())
+                .mapToObj(i -> Pair.of(i, snapshot.get(i))).collect(Collectors.toList());
     }
 
     public UnaryOperator<String> stringEntryUpdater = (note) -> {
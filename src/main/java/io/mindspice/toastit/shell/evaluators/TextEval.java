@@ -3,6 +3,7 @@ package io.mindspice.toastit.shell.evaluators;
 import com.github.freva.asciitable.ColumnData;
 import io.mindspice.toastit.App;
 import io.mindspice.toastit.entries.SearchResult;
+import io.mindspice.toastit.entries.text.SearchTask;
 import io.mindspice.toastit.entries.text.TextEntry;
 import io.mindspice.toastit.entries.text.TextManager;
 import io.mindspice.toastit.enums.EntryType;
@@ -12,14 +13,15 @@ import io.mindspice.toastit.util.Settings;
 import io.mindspice.toastit.util.TableConfig;
 import io.mindspice.toastit.util.TableUtil;
 import io.mindspice.toastit.util.Util;
+import org.jline.terminal.Terminal;
 
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public class TextEval extends ShellEvaluator<TextEval> {
@@ -75,11 +77,17 @@ public class TextEval extends ShellEvaluator<TextEval> {
         if (entry == null) {
             return "Entry Not Found";
         } else {
-            Settings.getEditor(Settings.FULL_TEXT_EDITOR).accept(entry.getFilePath());
+            openInEditor(entry);
             return modeDisplay();
         }
     }
 
+    // Reindexed once the editor returns so searches see the saved text
+    public void openInEditor(TextEntry entry) {
+        Settings.getEditor(Settings.FULL_TEXT_EDITOR).accept(entry.getFilePath());
+        manager.reindexEntry(entry);
+    }
+
     public String onViewEntry(String s) {
         TextEntry entry = Util.entryMatch(manager.getEntries(), Util.removeFirstWord(s));
         if (entry == null) {
@@ -92,7 +100,7 @@ public class TextEval extends ShellEvaluator<TextEval> {
 
     public String dailyJournal(String s) {
         try {
-            Settings.getEditor(Settings.FULL_TEXT_EDITOR).accept(manager.getDailyJournal().getFilePath());
+            openInEditor(manager.getDailyJournal());
         } catch (IOException e) {
             System.err.println("Error creating journal entry: " + e);
             return e.getMessage();
@@ -113,8 +121,7 @@ public class TextEval extends ShellEvaluator<TextEval> {
             printLnToTerminal("Created " + tStr);
 
             if (confirmPrompt(String.format("Open %s Now?", tStr))) {
-                Consumer<Path> editor = Settings.getEditor(Settings.FULL_TEXT_EDITOR);
-                editor.accept(note.getFilePath());
+                openInEditor(note);
             }
             promptInput(tStr + " Created, Press Enter To Return...");
             return modeDisplay();
@@ -148,7 +155,8 @@ public class TextEval extends ShellEvaluator<TextEval> {
         String cmds = String.join("\n", "\nAvailable Actions:",
                 TableUtil.basicRow(2, "new", "open <index/name>", "view <index/name>", "update <index/name>", "delete <index/name>"),
                 TableUtil.basicRow(2, "filter<all>", "filter <tag>", "filter <name>", "filter created"),
-                TableUtil.basicRow(2, "search <String>", "archive <index/name>", "done"));
+                TableUtil.basicRow(2, "search <String>", "archive <index/name>", "done"),
+                "\nSearch: words \"a phrase\" /regex/ tag:<tag> after:<date> before:<date>");
 
         String output = "";
         while (true) {
@@ -216,13 +224,13 @@ public class TextEval extends ShellEvaluator<TextEval> {
                              ? textPrompt.create()
                                      .validateInputLength(userInput, 2)
                                      .validateAndGetIndex(userInput[1])
-                                     .itemConsumer(i -> Settings.getEditor(Settings.FULL_TEXT_EDITOR).accept(i.getFilePath()))
+                                     .itemConsumer(this::openInEditor)
                                      .waitPrompt(() -> promptInput("Press Enter When Finished And Saved"))
                                      .display(__ -> "")
                              : textPrompt.create()
                                      .validateInputLength(userInput, 2)
                                      .forceSelect(Util.entryMatch(textPrompt.getItems(), rawInput.replace("open", "")))
-                                     .itemConsumer(i -> Settings.getEditor(Settings.FULL_TEXT_EDITOR).accept(i.getFilePath()))
+                                     .itemConsumer(this::openInEditor)
                                      .waitPrompt(() -> promptInput("Press Enter When Finished And Saved"))
                                      .display(__ -> "");
                 }
@@ -244,8 +252,11 @@ public class TextEval extends ShellEvaluator<TextEval> {
                 case String s when s.startsWith("filter") -> filterPrompt(userInput, textPrompt);
 
                 case String s when s.startsWith("search") && userInput.length > 1 -> {
-                    List<SearchResult> results = manager.searchEntries(rawInput.replace("search", ""));
-                    viewSearchResults(results);
+                    try {
+                        runSearch(rawInput.replaceFirst("search", ""));
+                    } catch (IllegalArgumentException e) {
+                        output = e.getMessage();
+                    }
                 }
 
                 case String s when s.startsWith("archive") -> {
@@ -279,18 +290,69 @@ public class TextEval extends ShellEvaluator<TextEval> {
         promptInput("Press Enter To Return To Menu");
     }
 
+    // Matches print as they are found, numbered in the order they print so the action prompt can use them in place.
+    // Ctrl-C stops the search early and keeps what was found so far
+    public void runSearch(String query) {
+        clearAndPrint(String.format("Searching %ss for: %s (Ctrl-C to stop)%n%n", tStr, query.trim()));
+        List<SearchResult> found = new ArrayList<>();
+        AtomicBoolean streaming = new AtomicBoolean(true);
+        SearchTask task = manager.startSearch(query, result -> {
+            synchronized (found) {
+                // Workers can still report after a timeout returns from await, those are dropped so the printed
+                // indexes match the prompt
+                if (!streaming.get()) { return; }
+                printLnToTerminal(TableUtil.truncateString(
+                        found.size() + " | " + result.entry().name() + ": " + result.matchedLine().trim()));
+                found.add(result);
+            }
+        });
+
+        Terminal.SignalHandler previous = terminal.handle(Terminal.Signal.INT, signal -> task.cancel());
+        try {
+            task.await();
+        } finally {
+            terminal.handle(Terminal.Signal.INT, previous);
+        }
+
+        List<SearchResult> results;
+        synchronized (found) {
+            streaming.set(false);
+            results = List.copyOf(found);
+        }
+
+        String header = "Search Results";
+        if (task.isTimedOut()) {
+            header += String.format(" (timed out after %d of %d files)", task.filesSearched(), task.fileCount());
+        } else if (task.isCancelled()) {
+            header += String.format(" (stopped after %d of %d files)", task.filesSearched(), task.fileCount());
+        } else if (results.size() >= Settings.SEARCH_MAX_RESULTS) {
+            header += String.format(" (first %d matches)", results.size());
+        }
+        printLnToTerminal(String.format("%n%s: %d", header, results.size()));
+        viewSearchResults(results, header, false);
+    }
+
     public void viewSearchResults(List<SearchResult> results) {
+        viewSearchResults(results, "Search Results", true);
+    }
+
+    // With showTable false the results are already on screen (streamed by runSearch), the table is only drawn once
+    // an action has cleared the screen
+    public void viewSearchResults(List<SearchResult> results, String header, boolean showTable) {
         InputPrompt<SearchResult> resultPrompt = new InputPrompt<>(results);
         String cmds = String.join("\n", "\nAvailable Actions:",
                 TableUtil.basicRow(2, "open <index>", "view <index", "done"));
 
         String output = "";
         while (true) {
-            clearAndPrint(TableUtil.generateTableWithHeader(
-                    "Search Results",
-                    resultPrompt.getIndexedItems(),
-                    TableConfig.SEARCH_VIEW_TABLE)
-            );
+            if (showTable) {
+                clearAndPrint(TableUtil.generateTableWithHeader(
+                        header,
+                        resultPrompt.getIndexedItems(),
+                        TableConfig.SEARCH_VIEW_TABLE)
+                );
+            }
+            showTable = true;
 
             printLnToTerminal(cmds);
             if (!output.isEmpty()) {
@@ -312,7 +374,7 @@ public class TextEval extends ShellEvaluator<TextEval> {
                 case String s when s.startsWith("open") -> output = resultPrompt.create()
                         .validateInputLength(userInput, 2)
                         .validateAndGetIndex(userInput[1])
-                        .itemConsumer(i -> Settings.getEditor(Settings.FULL_TEXT_EDITOR).accept(i.entry().getFilePath()))
+                        .itemConsumer(i -> openInEditor(i.entry()))
                         .display(__ -> "");
 
                 default -> output = "Invalid input or index";
@@ -0,0 +1,109 @@
+package io.mindspice.toastit.sqlite;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+// Fixed size pool of sqlite connections. Connections are opened lazily up to maxSize and handed out
+// exclusively, each one keeps its own cache of prepared statements. Uses j.u.c queues rather than
+// synchronized blocks so virtual threads waiting on a connection do not pin their carrier.
+public class ConnectionPool {
+    private final String url;
+    private final DBProfile profile;
+    private final int maxSize;
+    private final long acquireTimeoutMs;
+    private final BlockingQueue<PooledConnection> idle;
+    private final AtomicInteger created = new AtomicInteger(0);
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, DBProfile profile, int maxSize, long acquireTimeoutMs) {
+        this.url = url;
+        this.profile = profile;
+        this.maxSize = Math.max(1, maxSize);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.idle = new ArrayBlockingQueue<>(this.maxSize);
+    }
+
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        PooledConnection conn = idle.poll();
+        if (conn != null) {
+            return conn;
+        }
+
+        int count = created.get();
+        while (count < maxSize) {
+            if (created.compareAndSet(count, count + 1)) {
+                try {
+                    return openConnection();
+                } catch (SQLException e) {
+                    created.decrementAndGet();
+                    throw e;
+                }
+            }
+            count = created.get();
+        }
+
+        try {
+            conn = idle.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for database connection");
+        }
+        if (conn == null) {
+            throw new SQLException("Timed out after " + acquireTimeoutMs + "ms waiting for database connection");
+        }
+        return conn;
+    }
+
+    void release(PooledConnection conn) {
+        if (closed || !idle.offer(conn)) {
+            conn.closePhysical();
+        }
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        if (conn == null) {
+            throw new SQLException("Failed to connect/create database at: " + url);
+        }
+        try {
+            profile.apply(conn);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return new PooledConnection(conn, this);
+    }
+
+    public int size() {
+        return created.get();
+    }
+
+    public int idleCount() {
+        return idle.size();
+    }
+
+    public DBProfile profile() {
+        return profile;
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public void close() {
+        closed = true;
+        PooledConnection conn;
+        while ((conn = idle.poll()) != null) {
+            conn.closePhysical();
+        }
+    }
+}
@@ -1,61 +1,177 @@
 package io.mindspice.toastit.sqlite;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.mindspice.toastit.entries.Entry;
 import io.mindspice.toastit.entries.event.EventEntry;
 import io.mindspice.toastit.entries.project.ProjectEntry;
 import io.mindspice.toastit.entries.task.TaskEntry;
 import io.mindspice.toastit.entries.text.TextEntry;
+import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.util.BinaryCodec;
 import io.mindspice.toastit.util.DateTimeUtil;
+import io.mindspice.toastit.util.EntryFiles;
 import io.mindspice.toastit.util.JSON;
 import io.mindspice.toastit.util.Settings;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 
 public class DBConnection {
+    // Filtered queries run by the refresh jobs, each is backed by an index in TableInit.INDEX_STATEMENTS (migration 2)
+    public static final String ACTIVE_TASKS_QUERY = "SELECT * FROM tasks WHERE started = true and archived = false";
+    public static final String ALL_TASKS_QUERY = "SELECT * FROM tasks where archived = false";
+    public static final String ACTIVE_PROJECTS_QUERY = "SELECT * FROM projects WHERE started = true and archived = false";
+    public static final String ALL_PROJECTS_QUERY = "SELECT * FROM projects where archived = false";
+    public static final String ALL_NOTES_QUERY = "SELECT * FROM notes where archived = false";
+    public static final String ALL_JOURNALS_QUERY = "SELECT * FROM journals where archived = false";
+    public static final String EVENTS_BEFORE_QUERY = "SELECT * FROM events WHERE start_time < ? and archived = false";
+    // Pinned to the end time index, without statistics the planner picks idx_events_start and reads every past event
+    public static final String EVENTS_WINDOW_QUERY =
+            "SELECT * FROM events INDEXED BY idx_events_ended WHERE end_time >= ? and start_time < ? and archived = false";
+    public static final String EVENTS_STARTING_QUERY =
+            "SELECT * FROM events WHERE start_time >= ? and start_time < ? and archived = false ORDER BY start_time";
+    // Keyset paging back from the window start, (end_time, uuid) of the last row is the cursor for the next page
+    public static final String PAST_EVENTS_PAGE_QUERY = """
+            SELECT * FROM events WHERE (end_time, uuid) < (?, ?) and archived = false
+            ORDER BY end_time DESC, uuid DESC LIMIT ?
+            """;
+    public static final String DELETE_PAST_EVENTS_QUERY = "DELETE FROM events WHERE end_time < ?";
+    public static final String TAGGED_UUIDS_QUERY = "SELECT entry_uuid FROM entry_tags WHERE tag = ?";
+    public static final String TAGGED_ENTRIES_QUERY = """
+            SELECT e.* FROM entry_tags g JOIN %s e ON e.uuid = g.entry_uuid
+            WHERE g.tag = ? AND g.entry_type = ? AND e.archived = false
+            """;
+
+    // Tasks written or deleted after a revision, for dropping cached copies
+    public static final String CHANGED_TASKS_QUERY = """
+            SELECT uuid FROM tasks WHERE revision > ?
+            UNION ALL SELECT uuid FROM deleted_entries WHERE entry_table = 'tasks' AND revision > ?
+            """;
+
+    public static final List<String> INDEXED_QUERIES = List.of(
+            ACTIVE_TASKS_QUERY, ALL_TASKS_QUERY, ACTIVE_PROJECTS_QUERY, ALL_PROJECTS_QUERY, ALL_NOTES_QUERY,
+            ALL_JOURNALS_QUERY, EVENTS_BEFORE_QUERY, EVENTS_WINDOW_QUERY, PAST_EVENTS_PAGE_QUERY, DELETE_PAST_EVENTS_QUERY,
+            EVENTS_STARTING_QUERY, CHANGED_TASKS_QUERY,
+            "SELECT * FROM tasks WHERE uuid = ?",
+            "UPDATE tasks SET archived = ? WHERE uuid = ?",
+            "DELETE FROM events WHERE uuid = ?",
+            "SELECT * FROM tasks WHERE revision > ?",
+            "SELECT * FROM projects WHERE revision > ?",
+            "SELECT uuid, revision FROM deleted_entries WHERE entry_table = ? and revision > ?",
+            TAGGED_UUIDS_QUERY,
+            String.format(TAGGED_ENTRIES_QUERY, "tasks")
+    );
+
     private final String url;
-    private final Connection connection;
+    private final ConnectionPool pool;
+    // Tasks loaded for projects, shared so projects referencing the same task read it once. Least recently used
+    // tasks are evicted past DATABASE_TASK_CACHE_SIZE. Cached tasks are replaced on upsert/refresh and dropped on
+    // delete, tasks are only added by getTasks. taskCacheRevision is the revision the cache was last checked at,
+    // getTasks drops every task changed since (by any writer) before reading from it.
+    private final Map<UUID, TaskEntry> taskCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, TaskEntry> eldest) {
+                    return size() > Settings.DATABASE_TASK_CACHE_SIZE;
+                }
+            }
+    );
+    private volatile long taskCacheRevision = -1;
 
     public DBConnection() throws IOException {
-        boolean exists = Files.exists(Path.of(Settings.DATABASE_PATH));
-        if (!exists) {
+        if (!Files.exists(Path.of(Settings.DATABASE_PATH))) {
             Files.createDirectories(Path.of(Settings.DATABASE_PATH).getParent());
-        };
+        }
         url = "jdbc:sqlite:" + Settings.DATABASE_PATH;
+        pool = new ConnectionPool(
+                url, DBProfile.fromSettings(), Settings.DATABASE_POOL_SIZE, Settings.DATABASE_ACQUIRE_TIMEOUT_MS
+        );
         try {
-            Connection conn = DriverManager.getConnection(url);
-            if (conn == null) {
-                throw new IllegalStateException("Failed to connect/create database at: " + url);
-            }
-            connection = conn;
+            pool.acquire().close(); // Fail fast on a bad path instead of on the first manager refresh
         } catch (SQLException e) {
             throw new IllegalStateException("Exception encountered connecting to database. Error: " + e);
         }
-        if (!exists) {
-            initDBTables();
+        migrate();
+        pruneDeletedEntries();
+        if (Settings.DATABASE_STORE_BODIES) {
+            int imported = importMetaFiles();
+            if (imported > 0) {
+                System.out.printf("Imported %d meta files into database%n", imported);
+            }
         }
     }
 
-    public void initDBTables() {
-        for (String table : TableInit.INIT_STATEMENTS) {
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute(table);
-            } catch (SQLException e) {
-                System.err.println(Arrays.toString(e.getStackTrace()));
-                throw new IllegalStateException("Exception encountered creating database tables: " + e);
+    // Brings the schema up to the latest TableInit migration, pending migrations all apply or none do
+    public void migrate() {
+        SchemaMigrator migrator = new SchemaMigrator(TableInit.MIGRATIONS);
+        try (PooledConnection conn = pool.acquire()) {
+            for (Migration migration : migrator.migrate(conn.connection())) {
+                System.out.printf("Applied database migration %d: %s%n", migration.version(), migration.description());
+            }
+        } catch (SQLException e) {
+            System.err.println(Arrays.toString(e.getStackTrace()));
+            throw new IllegalStateException("Exception encountered migrating database schema: " + e);
+        }
+    }
+
+    // Managers do a full load on start, so tombstones from previous runs are never read
+    private void pruneDeletedEntries() {
+        try (PooledConnection conn = pool.acquire()) {
+            conn.prepare("DELETE FROM deleted_entries").executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Failed to prune deleted entries: " + e.getMessage());
+        }
+    }
+
+    public int getSchemaVersion() throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            return SchemaMigrator.currentVersion(conn.connection());
+        } catch (SQLException e) {
+            throw new IOException("Error reading schema version. Error: " + e.getMessage());
+        }
+    }
+
+    public List<String> explainQueryPlan(String query) throws IOException {
+        List<String> plan = new ArrayList<>(2);
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare("EXPLAIN QUERY PLAN " + query);
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    plan.add(result.getString("detail"));
+                }
             }
+        } catch (SQLException e) {
+            throw new IOException("Error explaining query: " + query + " Error: " + e.getMessage());
         }
-        System.out.println("Initialized and created tables");
+        return plan;
     }
 
-    public Connection getConnection() {
-        return connection;
+    public ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    public void close() {
+        pool.close();
     }
 
     ////////////
@@ -88,40 +204,25 @@ public class DBConnection {
         }
     }
 
-    private List<EventEntry.Stub> execMapEventStubs(PreparedStatement ps) throws IOException {
-        List<EventEntry.Stub> events = new ArrayList<>();
-        try (ResultSet result = ps.executeQuery()) {
-            while (result.next()) {
-                var event = new EventEntry.Stub(
-                        result.getString("uuid"),
-                        result.getString("name"),
-                        result.getString("tags"),
-                        result.getLong("start_time"),
-                        result.getLong("end_time"),
-                        result.getString("reminders"),
-                        result.getString("linked_uuid"),
-                        result.getBoolean("completed")
-                );
-                events.add(event);
-            }
-            return events;
-        } catch (SQLException e) {
-            throw new IOException("SQL error returned Error: " + e.getMessage());
-        }
-    }
-
+    // Uuids and reminders come from their binary columns, the text columns are only read for rows inserted without
+    // them (outside the upsert)
     private List<EventEntry> execMapEvents(PreparedStatement ps) throws IOException {
         List<EventEntry> events = new ArrayList<>();
         try (ResultSet result = ps.executeQuery()) {
             while (result.next()) {
+                byte[] uuid = result.getBytes("uuid_bin");
+                byte[] linkedUUID = result.getBytes("linked_bin");
+                byte[] reminders = result.getBytes("reminders_bin");
                 var event = new EventEntry(
-                        UUID.fromString(result.getString("uuid")),
+                        uuid != null ? BinaryCodec.uuidOf(uuid) : UUID.fromString(result.getString("uuid")),
                         result.getString("name"),
                         JSON.jsonArrayToStringList(result.getString("tags")),
                         DateTimeUtil.unixToLocal(result.getLong("start_time")),
                         DateTimeUtil.unixToLocal(result.getLong("end_time")),
-                        JSON.jsonArrayToReminderList(result.getString("reminders")),
-                        UUID.fromString(result.getString("linked_uuid")),
+                        reminders != null
+                                ? BinaryCodec.decodeReminders(reminders)
+                                : JSON.jsonArrayToReminderList(result.getString("reminders")),
+                        linkedUUID != null ? BinaryCodec.uuidOf(linkedUUID) : UUID.fromString(result.getString("linked_uuid")),
                         result.getBoolean("completed")
                 );
                 events.add(event);
@@ -177,18 +278,54 @@ public class DBConnection {
         }
     }
 
+    // Hydrates from the body column when present, otherwise falls back to the entry's meta file
+    private static <T> T hydrateEntry(ResultSet result, Class<T> clazz) throws SQLException, IOException {
+        String body = result.getString("body");
+        return body != null
+                ? JSON.read(body, clazz)
+                : EntryFiles.read(result.getString("meta_path"), clazz);
+    }
+
+    private <T> List<T> execMapEntries(PreparedStatement ps, Class<T> clazz) throws IOException {
+        List<T> entries = new ArrayList<>();
+        try (ResultSet result = ps.executeQuery()) {
+            while (result.next()) {
+                try {
+                    entries.add(hydrateEntry(result, clazz));
+                } catch (IOException e) {
+                    System.err.println("Failed to load: " + e.getMessage());
+                }
+            }
+            return entries;
+        } catch (SQLException e) {
+            throw new IOException("SQL error returned Error: " + e.getMessage());
+        }
+    }
+
+    private <T> List<T> entryQuery(String query, Class<T> clazz) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
+            return execMapEntries(ps, clazz);
+        } catch (SQLException e) {
+            throw new IOException("Error querying " + clazz.getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
     // Select Statements
 
     private <T> T genericMetaSelect(UUID uuid, String tableName, Class<T> clazz) throws IOException {
-        String query = String.format("SELECT meta_path FROM %s WHERE uuid = ?", tableName);
+        String query = String.format("SELECT meta_path, body FROM %s WHERE uuid = ?", tableName);
 
         String metaPath = null;
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        String body = null;
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setString(1, uuid.toString());
 
             try (ResultSet result = ps.executeQuery()) {
                 if (result.next()) {
                     metaPath = result.getString("meta_path");
+                    body = result.getString("body");
                 } else {
                     throw new IOException("No meta_path found for UUID: " + uuid);
                 }
@@ -196,13 +333,68 @@ public class DBConnection {
         } catch (SQLException e) {
             throw new IOException(String.format("SQL error returned for: %s Error: %s", uuid, e.getMessage()));
         }
-        return JSON.loadObjectFromFile(metaPath, clazz);
+        return body != null ? JSON.read(body, clazz) : EntryFiles.read(metaPath, clazz);
     }
 
     public TaskEntry getTaskByUUID(UUID uuid) throws IOException {
         return genericMetaSelect(uuid, "tasks", TaskEntry.class);
     }
 
+    // Tasks for uuids in the given order, uuids without a task are skipped. Cached tasks are reused, the rest are
+    // read with a single IN (...) query
+    public List<TaskEntry> getTasks(List<UUID> uuids) throws IOException {
+        Map<UUID, TaskEntry> found = new HashMap<>();
+        try (PooledConnection conn = pool.acquire()) {
+            invalidateChangedTasks(conn);
+            for (UUID uuid : uuids) {
+                TaskEntry task = taskCache.get(uuid);
+                if (task != null) { found.put(uuid, task); }
+            }
+            List<UUID> missing = uuids.stream().filter(uuid -> !found.containsKey(uuid)).distinct().toList();
+            if (!missing.isEmpty()) {
+                String query = String.format(
+                        "SELECT * FROM tasks WHERE uuid IN (%s)", String.join(", ", Collections.nCopies(missing.size(), "?"))
+                );
+                PreparedStatement ps = conn.prepare(query);
+                for (int i = 0; i < missing.size(); ++i) {
+                    ps.setString(i + 1, missing.get(i).toString());
+                }
+                execMapEntries(ps, TaskEntry.class).forEach(task -> {
+                    taskCache.put(task.uuid(), task);
+                    found.put(task.uuid(), task);
+                });
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error querying tasks: " + e.getMessage());
+        }
+        // Read from the local map, the cache may already have evicted part of a large project
+        return uuids.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    // Drops cached tasks updated or deleted after the last check, active or not. The revision is read first, a
+    // task written during the check is newer than it and is dropped again on the next one.
+    private void invalidateChangedTasks(PooledConnection conn) throws SQLException, IOException {
+        long revision;
+        try (ResultSet result = conn.prepare("SELECT value FROM revision_seq").executeQuery()) {
+            revision = result.next() ? result.getLong("value") : 0;
+        }
+        long since = taskCacheRevision;
+        if (revision == since) { return; }
+        if (since < 0) {
+            taskCache.clear();
+        } else {
+            PreparedStatement ps = conn.prepare(CHANGED_TASKS_QUERY);
+            ps.setLong(1, since);
+            ps.setLong(2, since);
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    taskCache.remove(UUID.fromString(result.getString("uuid")));
+                }
+            }
+        }
+        taskCacheRevision = revision;
+    }
+
     public ProjectEntry getProjectByUUID(UUID uuid) throws IOException {
         return genericMetaSelect(uuid, "projects", ProjectEntry.class);
     }
@@ -219,7 +411,8 @@ public class DBConnection {
         String query = "SELECT * FROM events WHERE uuid = ?";
 
         EventEntry event = null;
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setString(1, uuid.toString());
 
             List<EventEntry> events = execMapEvents(ps);
@@ -230,25 +423,18 @@ public class DBConnection {
         }
     }
 
+    // Built from the mapped entry, the row only keeps reminders and the linked uuid in binary columns
     public EventEntry.Stub getEventStubByUUID(UUID uuid) throws IOException {
-        String query = "SELECT * FROM events WHERE uuid = ?";
-
-        EventEntry.Stub event = null;
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, uuid.toString());
-
-            List<EventEntry.Stub> events = execMapEventStubs(ps);
-            return events.isEmpty() ? null : events.getFirst();
-        } catch (SQLException e) {
-            throw new IOException(String.format("SQL error returned for: %s Error: %s", uuid, e.getMessage()));
-        }
+        EventEntry event = getEventByUUID(uuid);
+        return event != null ? event.getStub() : null;
     }
 
     public TaskEntry.Stub getTaskStubByUUID(UUID uuid) throws IOException {
         String query = "SELECT * FROM tasks WHERE uuid = ?";
 
         TaskEntry.Stub stub = null;
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setString(1, uuid.toString());
 
             List<TaskEntry.Stub> tasks = execMapTaskStubs(ps);
@@ -262,7 +448,8 @@ public class DBConnection {
         String query = "SELECT * FROM projects WHERE uuid = ?";
 
         ProjectEntry.Stub stub = null;
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setString(1, uuid.toString());
 
             List<ProjectEntry.Stub> projects = execMapProjectStubs(ps);
@@ -277,7 +464,8 @@ public class DBConnection {
         String query = String.format("SELECT * FROM %s WHERE uuid = ?", table);
 
         TextEntry.Stub stub = null;
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setString(1, uuid.toString());
 
             List<TextEntry.Stub> entries = execMapTextStubs(ps);
@@ -296,21 +484,63 @@ public class DBConnection {
     }
 
     public List<EventEntry> getEvents(long threshold) throws IOException {
-        String query = threshold < 0
-                ? "SELECT * FROM events"
-                : String.format("SELECT * FROM events WHERE start_time < %d", threshold);
+        String query = threshold < 0 ? "SELECT * FROM events" : EVENTS_BEFORE_QUERY;
+
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
+            if (threshold >= 0) {
+                ps.setLong(1, threshold);
+            }
+            return execMapEvents(ps);
+        } catch (SQLException e) {
+            throw new IOException("Error querying events:" + e.getMessage());
+        }
+    }
+
+    // Unarchived events overlapping [from, to), unix times. A range scan of the events ending from on, so past
+    // events before the window are never read
+    public List<EventEntry> getEventsInWindow(long from, long to) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(EVENTS_WINDOW_QUERY);
+            ps.setLong(1, from);
+            ps.setLong(2, to);
+            return execMapEvents(ps);
+        } catch (SQLException e) {
+            throw new IOException("Error querying events:" + e.getMessage());
+        }
+    }
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+    // Unarchived events starting in [from, to), unix times, by start time
+    public List<EventEntry> getEventsStartingBetween(long from, long to) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(EVENTS_STARTING_QUERY);
+            ps.setLong(1, from);
+            ps.setLong(2, to);
             return execMapEvents(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying events:" + e.getMessage());
         }
     }
 
+    // Unarchived events ending before (endTime, uuid), latest first, at most limit. Pass the last returned event's
+    // end time and uuid for the next page, an empty uuid to start from endTime
+    public List<EventEntry> getPastEventsPage(long endTime, String uuid, int limit) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(PAST_EVENTS_PAGE_QUERY);
+            ps.setLong(1, endTime);
+            ps.setString(2, uuid);
+            ps.setInt(3, limit);
+            return execMapEvents(ps);
+        } catch (SQLException e) {
+            throw new IOException("Error querying past events:" + e.getMessage());
+        }
+    }
+
     public List<TaskEntry.Stub> getActiveTasks() throws IOException {
-        String query = "SELECT * FROM tasks WHERE started = true and archived = false";
+        String query = ACTIVE_TASKS_QUERY;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             return execMapTaskStubs(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying tasks:" + e.getMessage());
@@ -318,19 +548,29 @@ public class DBConnection {
     }
 
     public List<TaskEntry.Stub> getAllTasks() throws IOException {
-        String query = "SELECT * FROM tasks where archived = false";
+        String query = ALL_TASKS_QUERY;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             return execMapTaskStubs(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying tasks:" + e.getMessage());
         }
     }
 
+    public List<TaskEntry> getActiveTaskEntries() throws IOException {
+        return entryQuery(ACTIVE_TASKS_QUERY, TaskEntry.class);
+    }
+
+    public List<TaskEntry> getAllTaskEntries() throws IOException {
+        return entryQuery(ALL_TASKS_QUERY, TaskEntry.class);
+    }
+
     public List<ProjectEntry.Stub> getActiveProjects() throws IOException {
-        String query = "SELECT * FROM projects WHERE started = true and archived = false";
+        String query = ACTIVE_PROJECTS_QUERY;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             return execMapProjectStubs(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying projects:" + e.getMessage());
@@ -338,19 +578,106 @@ public class DBConnection {
     }
 
     public List<ProjectEntry.Stub> getAllProjects() throws IOException {
-        String query = "SELECT * FROM projects where archived = false";
+        String query = ALL_PROJECTS_QUERY;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             return execMapProjectStubs(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying projects:" + e.getMessage());
         }
     }
 
+    public List<ProjectEntry> getActiveProjectEntries() throws IOException {
+        return entryQuery(ACTIVE_PROJECTS_QUERY, ProjectEntry.class);
+    }
+
+    public List<ProjectEntry> getAllProjectEntries() throws IOException {
+        return entryQuery(ALL_PROJECTS_QUERY, ProjectEntry.class);
+    }
+
+    // Revision tracking, see TableInit.REVISION_TABLES
+
+    public long getRevision() throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            try (ResultSet result = conn.prepare("SELECT value FROM revision_seq").executeQuery()) {
+                return result.next() ? result.getLong("value") : 0;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error querying revision: " + e.getMessage());
+        }
+    }
+
+    // Changes to the active set (activePredicate) after sinceRevision, ordered by revision. Rows that changed
+    // but are no longer active, and deleted rows, come back as removals without loading their body/meta file.
+    private <T> List<EntryChange<T>> activeChangesSince(String table, String activePredicate, Class<T> clazz,
+            long sinceRevision) throws IOException {
+        String rowQuery = String.format("SELECT *, (%s) AS is_active FROM %s WHERE revision > ?", activePredicate, table);
+        String deletedQuery = "SELECT uuid, revision FROM deleted_entries WHERE entry_table = ? and revision > ?";
+
+        List<EntryChange<T>> changes = new ArrayList<>();
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(rowQuery);
+            ps.setLong(1, sinceRevision);
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    UUID uuid = UUID.fromString(result.getString("uuid"));
+                    long revision = result.getLong("revision");
+                    T entry = null;
+                    if (result.getBoolean("is_active")) {
+                        // Fails the whole refresh, a null entry would read as a removal and move the watermark
+                        // past it, the caller retries from its old revision instead
+                        try {
+                            entry = hydrateEntry(result, clazz);
+                        } catch (IOException e) {
+                            throw new IOException(String.format("Failed to load changed %s row: %s Error: %s",
+                                    table, uuid, e.getMessage()), e);
+                        }
+                    }
+                    changes.add(new EntryChange<>(uuid, revision, entry));
+                }
+            }
+
+            ps = conn.prepare(deletedQuery);
+            ps.setString(1, table);
+            ps.setLong(2, sinceRevision);
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    changes.add(new EntryChange<>(
+                            UUID.fromString(result.getString("uuid")), result.getLong("revision"), null)
+                    );
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(String.format("Error querying changes for: %s Error: %s", table, e.getMessage()));
+        }
+        changes.sort(Comparator.comparingLong(EntryChange::revision));
+        return changes;
+    }
+
+    public List<EntryChange<TaskEntry>> getActiveTaskChanges(long sinceRevision) throws IOException {
+        List<EntryChange<TaskEntry>> changes =
+                activeChangesSince("tasks", "started = true and archived = false", TaskEntry.class, sinceRevision);
+        // A removal may only have left the active set, the cached copy is dropped and read again when next used
+        changes.forEach(change -> {
+            if (change.isRemoval()) {
+                taskCache.remove(change.uuid());
+            } else {
+                taskCache.replace(change.uuid(), change.entry());
+            }
+        });
+        return changes;
+    }
+
+    public List<EntryChange<ProjectEntry>> getActiveProjectChanges(long sinceRevision) throws IOException {
+        return activeChangesSince("projects", "started = true and archived = false", ProjectEntry.class, sinceRevision);
+    }
+
     public List<TextEntry.Stub> getAllNotes() throws IOException {
-        String query = "SELECT * FROM notes where archived = false";
+        String query = ALL_NOTES_QUERY;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             return execMapTextStubs(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying notes:" + e.getMessage());
@@ -358,9 +685,10 @@ public class DBConnection {
     }
 
     public List<TextEntry.Stub> getAllJournals() throws IOException {
-        String query = "SELECT * FROM journals where archived = false";
+        String query = ALL_JOURNALS_QUERY;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             return execMapTextStubs(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying journals:" + e.getMessage());
@@ -371,141 +699,260 @@ public class DBConnection {
     // INSERT //
     ///////////
 
-    public void upsertEvent(EventEntry eventEntry) throws IOException {
+    private static final String EVENT_UPSERT = """
+            INSERT INTO events (uuid, name, tags, start_time, end_time, reminders, linked_uuid, completed,
+                uuid_bin, linked_bin, reminders_bin)
+               VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT(uuid) DO UPDATE SET
+               name = excluded.name,
+               tags = excluded.tags,
+               start_time = excluded.start_time,
+               end_time = excluded.end_time,
+               reminders = excluded.reminders,
+               linked_uuid = excluded.linked_uuid,
+               completed = excluded.completed,
+               uuid_bin = excluded.uuid_bin,
+               linked_bin = excluded.linked_bin,
+               reminders_bin = excluded.reminders_bin;
+            """;
+
+    private static final String TASK_UPSERT = """
+            INSERT INTO tasks(uuid, name, started, completed, tags, due_by,
+                started_at, completed_at, reminders, meta_path, body)
+               VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT(uuid) DO UPDATE SET
+               name = excluded.name,
+               tags = excluded.tags,
+               started = excluded.started,
+               completed = excluded.completed,
+               tags = excluded.tags,
+               due_by = excluded.due_by,
+               started_at = excluded.started_at,
+               completed_at = excluded.completed_at,
+               reminders = excluded.reminders,
+               meta_path = excluded.meta_path,
+               body = excluded.body;
+            """;
+
+    private static final String PROJECT_UPSERT = """
+            INSERT INTO projects (uuid, name, started, completed, tags, due_by, started_at,
+                completed_at, reminders, meta_path, project_path, open_with, body)
+               VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT(uuid) DO UPDATE SET
+               name = excluded.name,
+               tags = excluded.tags,
+               started = excluded.started,
+               completed = excluded.completed,
+               tags = excluded.tags,
+               due_by = excluded.due_by,
+               started_at = excluded.started_at,
+               completed_at = excluded.completed_at,
+               reminders = excluded.reminders,
+               meta_path = excluded.meta_path,
+               project_path = excluded.project_path,
+               open_with = excluded.open_with,
+               body = excluded.body
+            """;
+
+    private static final String TEXT_UPSERT = """
+            INSERT INTO %s (uuid, name, created_at, tags, meta_path, body)
+               VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT(uuid) DO UPDATE SET
+               name = excluded.name,
+               created_at = excluded.created_at,
+               tags = excluded.tags,
+               meta_path = excluded.meta_path,
+               body = excluded.body;
+            """;
+
+    // Rows per executeBatch, bounds the driver side buffer on large imports
+    private static final int BATCH_SIZE = 500;
+
+    @FunctionalInterface
+    private interface StubBinder<T> {
+        String bind(PreparedStatement ps, T entry) throws SQLException, IOException;
+    }
+
+    // Null when bodies are not stored, the upsert then also clears a body left from when they were
+    private static String bodyOf(Object entry) throws JsonProcessingException {
+        return Settings.DATABASE_STORE_BODIES ? JSON.writeString(entry) : null;
+    }
+
+    private static String bindEvent(PreparedStatement ps, EventEntry eventEntry) throws SQLException, IOException {
         EventEntry.Stub entry = eventEntry.getStub();
-        String query = """
-                INSERT INTO events (uuid, name, tags, start_time, end_time, reminders, linked_uuid, completed)
-                   VALUES (?, ?, ?, ?, ?, ?, ?, ?)
-                ON CONFLICT(uuid) DO UPDATE SET
-                   name = excluded.name,
-                   tags = excluded.tags,
-                   start_time = excluded.start_time,
-                   end_time = excluded.end_time,
-                   reminders = excluded.reminders,
-                   linked_uuid = excluded.linked_uuid,
-                   completed = excluded.completed;
-                """;
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, entry.uuid());
-            ps.setString(2, entry.name());
-            ps.setString(3, entry.tags());
-            ps.setLong(4, entry.startTime());
-            ps.setLong(5, entry.endTime());
-            ps.setString(6, entry.reminders());
-            ps.setString(7, entry.linkedUUID());
-            ps.setBoolean(8, entry.completed());
+        ps.setString(1, entry.uuid());
+        ps.setString(2, entry.name());
+        ps.setString(3, entry.tags());
+        ps.setLong(4, entry.startTime());
+        ps.setLong(5, entry.endTime());
+        ps.setNull(6, Types.VARCHAR); // Reminders and linked uuid are only stored in their binary columns
+        ps.setNull(7, Types.VARCHAR);
+        ps.setBoolean(8, entry.completed());
+        ps.setBytes(9, BinaryCodec.uuidBytes(eventEntry.uuid()));
+        ps.setBytes(10, BinaryCodec.uuidBytes(eventEntry.linkedUUID()));
+        ps.setBytes(11, BinaryCodec.encodeReminders(eventEntry.reminders()));
+        return entry.uuid();
+    }
+
+    private static String bindTask(PreparedStatement ps, TaskEntry taskEntry) throws SQLException, IOException {
+        TaskEntry.Stub entry = taskEntry.getStub();
+        ps.setString(1, entry.uuid());
+        ps.setString(2, entry.name());
+        ps.setBoolean(3, entry.started());
+        ps.setBoolean(4, entry.completed());
+        ps.setString(5, entry.tags());
+        ps.setLong(6, entry.dueBy());
+        ps.setLong(7, entry.startedAt());
+        ps.setLong(8, entry.completedAt());
+        ps.setString(9, entry.reminders());
+        ps.setString(10, entry.metaPath());
+        ps.setString(11, bodyOf(taskEntry));
+        return entry.uuid();
+    }
+
+    private static String bindProject(PreparedStatement ps, ProjectEntry projectEntry) throws SQLException, IOException {
+        ProjectEntry.Stub entry = projectEntry.getStub();
+        ps.setString(1, entry.uuid());
+        ps.setString(2, entry.name());
+        ps.setBoolean(3, entry.started());
+        ps.setBoolean(4, entry.completed());
+        ps.setString(5, entry.tags());
+        ps.setLong(6, entry.dueBy());
+        ps.setLong(7, entry.startedAt());
+        ps.setLong(8, entry.completedAt());
+        ps.setString(9, entry.reminders());
+        ps.setString(10, entry.metaPath());
+        ps.setString(11, entry.projectPath());
+        ps.setString(12, entry.openWith());
+        ps.setString(13, bodyOf(projectEntry));
+        return entry.uuid();
+    }
 
+    private static String bindText(PreparedStatement ps, TextEntry textEntry) throws SQLException, IOException {
+        TextEntry.Stub entry = textEntry.getStub();
+        ps.setString(1, entry.uuid());
+        ps.setString(2, entry.name());
+        ps.setLong(3, entry.createdAt());
+        ps.setString(4, entry.tags());
+        ps.setString(5, entry.metaPath());
+        ps.setString(6, bodyOf(textEntry));
+        return entry.uuid();
+    }
+
+    private <T> void upsert(String query, T entry, StubBinder<T> binder) throws IOException {
+        String uuid = null;
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
+            uuid = binder.bind(ps, entry);
             ps.executeUpdate();
         } catch (SQLException e) {
-            throw new IOException(String.format("SQL error returned for: %s Error: %s", entry.uuid(), e.getMessage()));
+            throw new IOException(String.format("SQL error returned for: %s Error: %s", uuid, e.getMessage()));
         }
     }
 
-    public void upsertTask(TaskEntry taskEntry) throws IOException {
-        TaskEntry.Stub entry = taskEntry.getStub();
-        String query = """
-                INSERT INTO tasks(uuid, name, started, completed, tags, due_by,
-                    started_at, completed_at, reminders, meta_path)
-                   VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                ON CONFLICT(uuid) DO UPDATE SET
-                   name = excluded.name,
-                   tags = excluded.tags,
-                   started = excluded.started,
-                   completed = excluded.completed,
-                   tags = excluded.tags,
-                   due_by = excluded.due_by,
-                   started_at = excluded.started_at,
-                   completed_at = excluded.completed_at,
-                   reminders = excluded.reminders,
-                   meta_path = excluded.meta_path;
-                """;
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, entry.uuid());
-            ps.setString(2, entry.name());
-            ps.setBoolean(3, entry.started());
-            ps.setBoolean(4, entry.completed());
-            ps.setString(5, entry.tags());
-            ps.setLong(6, entry.dueBy());
-            ps.setLong(7, entry.startedAt());
-            ps.setLong(8, entry.completedAt());
-            ps.setString(9, entry.reminders());
-            ps.setString(10, entry.metaPath());
-
-            ps.executeUpdate();
+    // Tasks, projects and events are indexed from the entry itself, in the transaction that writes the row so the
+    // row and its search document are never out of step
+    private <T extends Entry> void upsertIndexed(String query, T entry, StubBinder<T> binder) throws IOException {
+        String uuid = null;
+        try (PooledConnection conn = pool.acquire()) {
+            Connection connection = conn.connection();
+            PreparedStatement ps = conn.prepare(query);
+            connection.setAutoCommit(false);
+            try {
+                uuid = binder.bind(ps, entry);
+                ps.executeUpdate();
+                writeSearchDocs(conn, List.of(indexDoc(entry)));
+                connection.commit();
+            } catch (SQLException | IOException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
         } catch (SQLException e) {
-            System.out.println(e);
-            throw new IOException(String.format("SQL error returned for: %s Error: %s", entry.uuid(), e.getMessage()));
+            throw new IOException(String.format("SQL error returned for: %s Error: %s", uuid, e.getMessage()));
         }
     }
 
-    public void upsertProject(ProjectEntry projectEntry) throws IOException {
-        ProjectEntry.Stub entry = projectEntry.getStub();
-        String query = """
-                INSERT INTO projects (uuid, name, started, completed, tags, due_by, started_at, 
-                    completed_at, reminders, meta_path, project_path, open_with)
-                   VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                ON CONFLICT(uuid) DO UPDATE SET
-                   name = excluded.name,
-                   tags = excluded.tags,
-                   started = excluded.started,
-                   completed = excluded.completed,
-                   tags = excluded.tags,
-                   due_by = excluded.due_by,
-                   started_at = excluded.started_at,
-                   completed_at = excluded.completed_at,
-                   reminders = excluded.reminders,
-                   meta_path = excluded.meta_path,
-                   project_path = excluded.project_path,
-                   open_with = excluded.open_with
-                """;
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, entry.uuid());
-            ps.setString(2, entry.name());
-            ps.setBoolean(3, entry.started());
-            ps.setBoolean(4, entry.completed());
-            ps.setString(5, entry.tags());
-            ps.setLong(6, entry.dueBy());
-            ps.setLong(7, entry.startedAt());
-            ps.setLong(8, entry.completedAt());
-            ps.setString(9, entry.reminders());
-            ps.setString(10, entry.metaPath());
-            ps.setString(11, entry.projectPath());
-            ps.setString(12, entry.openWith());
+    // One transaction (and one commit/fsync) for the whole collection, nothing is written if any row fails
+    private <T> void upsertBatch(String query, Collection<T> entries, StubBinder<T> binder) throws IOException {
+        upsertBatch(query, entries, binder, null);
+    }
 
-            ps.executeUpdate();
+    // With an indexer the search documents of the entries are written in the same transaction as the rows
+    private <T> void upsertBatch(String query, Collection<T> entries, StubBinder<T> binder, Function<T, IndexDoc> indexer)
+            throws IOException {
+        if (entries.isEmpty()) { return; }
+        String uuid = null;
+        try (PooledConnection conn = pool.acquire()) {
+            Connection connection = conn.connection();
+            PreparedStatement ps = conn.prepare(query);
+            connection.setAutoCommit(false);
+            try {
+                int pending = 0;
+                for (T entry : entries) {
+                    uuid = binder.bind(ps, entry);
+                    ps.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    ps.executeBatch();
+                }
+                if (indexer != null) {
+                    writeSearchDocs(conn, entries.stream().map(indexer).toList());
+                }
+                connection.commit();
+            } catch (SQLException | IOException e) {
+                ps.clearBatch();
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
-            throw new IOException(String.format("SQL error returned for: %s Error: %s, Trace:",
-                    entry.uuid(), e.getMessage(), Arrays.toString(e.getStackTrace())));
+            throw new IOException(String.format("SQL error returned for batch at: %s Error: %s", uuid, e.getMessage()));
         }
     }
 
+    public void upsertEvent(EventEntry eventEntry) throws IOException {
+        upsertIndexed(EVENT_UPSERT, eventEntry, DBConnection::bindEvent);
+    }
+
+    public void upsertTask(TaskEntry taskEntry) throws IOException {
+        upsertIndexed(TASK_UPSERT, taskEntry, DBConnection::bindTask);
+        taskCache.replace(taskEntry.uuid(), taskEntry);
+    }
+
+    public void upsertProject(ProjectEntry projectEntry) throws IOException {
+        upsertIndexed(PROJECT_UPSERT, projectEntry, DBConnection::bindProject);
+    }
+
     private void upsertTextEntry(TextEntry textEntry, String table) throws IOException {
-        TextEntry.Stub entry = textEntry.getStub();
-        String query = String.format("""
-                INSERT INTO %s (uuid, name, created_at, tags, meta_path)
-                   VALUES (?, ?, ?, ?, ?)
-                ON CONFLICT(uuid) DO UPDATE SET
-                   name = excluded.name,
-                   created_at = excluded.created_at,
-                   tags = excluded.tags,
-                   meta_path = excluded.meta_path;
-                """, table);
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, entry.uuid());
-            ps.setString(2, entry.name());
-            ps.setLong(3, entry.createdAt());
-            ps.setString(4, entry.tags());
-            ps.setString(5, entry.metaPath());
+        upsert(String.format(TEXT_UPSERT, table), textEntry, DBConnection::bindText);
+    }
 
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new IOException(String.format("SQL error returned for: %s Error: %s", entry.uuid(), e.getMessage()));
-        }
+    public void upsertEvents(Collection<EventEntry> entries) throws IOException {
+        upsertBatch(EVENT_UPSERT, entries, DBConnection::bindEvent, DBConnection::indexDoc);
+    }
+
+    public void upsertTasks(Collection<TaskEntry> entries) throws IOException {
+        upsertBatch(TASK_UPSERT, entries, DBConnection::bindTask, DBConnection::indexDoc);
+        entries.forEach(task -> taskCache.replace(task.uuid(), task));
+    }
+
+    public void upsertProjects(Collection<ProjectEntry> entries) throws IOException {
+        upsertBatch(PROJECT_UPSERT, entries, DBConnection::bindProject, DBConnection::indexDoc);
+    }
+
+    public void upsertNotes(Collection<TextEntry> entries) throws IOException {
+        upsertBatch(String.format(TEXT_UPSERT, "notes"), entries, DBConnection::bindText);
+    }
+
+    public void upsertJournals(Collection<TextEntry> entries) throws IOException {
+        upsertBatch(String.format(TEXT_UPSERT, "journals"), entries, DBConnection::bindText);
     }
 
     public void upsertNote(TextEntry entry) throws IOException {
@@ -519,7 +966,8 @@ public class DBConnection {
     private void setArchived(String uuid, String table, boolean isArchived) throws IOException {
         String query = String.format("UPDATE %s SET archived = ? WHERE uuid = ?", table);
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setBoolean(1, isArchived);
             ps.setString(2, uuid);
             ps.executeUpdate();
@@ -537,7 +985,7 @@ public class DBConnection {
     }
 
     public void archiveProject(UUID uuid, boolean isArchived) throws IOException {
-        setArchived(uuid.toString(), "project", isArchived);
+        setArchived(uuid.toString(), "projects", isArchived);
     }
 
     public void archiveNote(UUID uuid, boolean isArchived) throws IOException {
@@ -553,9 +1001,10 @@ public class DBConnection {
     ////////////
 
     public void deletePastEventEntries(long threshold) throws IOException {
-        String query = "DELETE FROM events WHERE end_time < ?";
+        String query = DELETE_PAST_EVENTS_QUERY;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setLong(1, threshold);
             ps.executeUpdate();
         } catch (SQLException e) {
@@ -571,6 +1020,7 @@ public class DBConnection {
 
     public void deleteTaskByUUID(UUID uuid) throws IOException {
         deleteByUUID("tasks", uuid);
+        taskCache.remove(uuid);
     }
 
     public void deleteProjectByUUID(UUID uuid) throws IOException {
@@ -588,7 +1038,8 @@ public class DBConnection {
     private void deleteByUUID(String table, UUID uuid) throws IOException {
         String query = String.format("DELETE FROM %s WHERE uuid = ?", table);
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setString(1, uuid.toString());
             ps.executeUpdate();
         } catch (SQLException e) {
@@ -599,4 +1050,417 @@ public class DBConnection {
         }
     }
 
+    //////////
+    // TAGS //
+    //////////
+
+    // Uuids of every entry carrying the tag (any type, archived included), case insensitive
+    public Set<UUID> getTaggedUUIDs(String tag) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(TAGGED_UUIDS_QUERY);
+            ps.setString(1, tag);
+            Set<UUID> uuids = new HashSet<>();
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    uuids.add(UUID.fromString(result.getString("entry_uuid")));
+                }
+            }
+            return uuids;
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for tag: %s Error: %s", tag, e.getMessage()));
+        }
+    }
+
+    private <T> List<T> taggedEntries(String table, EntryType type, String tag, Class<T> clazz) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(String.format(TAGGED_ENTRIES_QUERY, table));
+            ps.setString(1, tag);
+            ps.setString(2, type.name());
+            return execMapEntries(ps, clazz);
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for tag: %s Error: %s", tag, e.getMessage()));
+        }
+    }
+
+    public List<TaskEntry> getTasksByTag(String tag) throws IOException {
+        return taggedEntries("tasks", EntryType.TASK, tag, TaskEntry.class);
+    }
+
+    public List<ProjectEntry> getProjectsByTag(String tag) throws IOException {
+        return taggedEntries("projects", EntryType.PROJECT, tag, ProjectEntry.class);
+    }
+
+    public List<EventEntry> getEventsByTag(String tag) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(String.format(TAGGED_ENTRIES_QUERY, "events"));
+            ps.setString(1, tag);
+            ps.setString(2, EntryType.EVENT.name());
+            return execMapEvents(ps);
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for tag: %s Error: %s", tag, e.getMessage()));
+        }
+    }
+
+    // Every tag in use with the number of entries carrying it, most used first
+    public Map<String, Integer> getTagCounts() throws IOException {
+        String query = "SELECT tag, count(*) AS uses FROM entry_tags GROUP BY tag ORDER BY uses DESC, tag";
+
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    counts.put(result.getString("tag"), result.getInt("uses"));
+                }
+            }
+            return counts;
+        } catch (SQLException e) {
+            throw new IOException("SQL error returned for tag counts Error: " + e.getMessage());
+        }
+    }
+
+    ////////////
+    // SEARCH //
+    ////////////
+
+    private static final String SEARCH_DOC_UPSERT = """
+            INSERT INTO search_docs (uuid, entry_type, modified) VALUES (?, ?, ?)
+            ON CONFLICT(uuid) DO UPDATE SET entry_type = excluded.entry_type, modified = excluded.modified
+            """;
+
+    // Name matches weigh more than body matches, snippet column -1 picks whichever column matched best
+    private static final String SEARCH_QUERY = """
+            SELECT d.uuid, d.entry_type, search_index.name AS name,
+                snippet(search_index, -1, '[', ']', '...', 16) AS snippet, bm25(search_index, 5.0, 1.0) AS rank
+            FROM search_index JOIN search_docs d ON d.id = search_index.rowid
+            WHERE search_index MATCH ? AND d.entry_type = ? AND d.archived = false
+            ORDER BY rank LIMIT ?
+            """;
+
+    private static final String SEARCH_ALL_QUERY = """
+            SELECT d.uuid, d.entry_type, search_index.name AS name,
+                snippet(search_index, -1, '[', ']', '...', 16) AS snippet, bm25(search_index, 5.0, 1.0) AS rank
+            FROM search_index JOIN search_docs d ON d.id = search_index.rowid
+            WHERE search_index MATCH ? AND d.archived = false
+            ORDER BY rank LIMIT ?
+            """;
+
+    // modified is the file mtime for notes/journals, 0 for entries stored in the database
+    private record IndexDoc(UUID uuid, EntryType type, String name, String body, long modified) { }
+
+    // Indexed file mtime by uuid, compared to the files to find documents that need reindexing
+    public Map<UUID, Long> getSearchIndexState(EntryType type) throws IOException {
+        String query = "SELECT uuid, modified FROM search_docs WHERE entry_type = ?";
+
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
+            ps.setString(1, type.name());
+            Map<UUID, Long> state = new HashMap<>();
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    state.put(UUID.fromString(result.getString("uuid")), result.getLong("modified"));
+                }
+            }
+            return state;
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for search index state: %s Error: %s",
+                    type, e.getMessage()));
+        }
+    }
+
+    // Reindexes the names and file contents of the entries in one transaction, a missing file indexes as empty.
+    // Files are read before a connection is taken so the write lock is only held for the inserts.
+    public void updateSearchIndex(Collection<TextEntry> entries) throws IOException {
+        if (entries.isEmpty()) { return; }
+        List<IndexDoc> docs = new ArrayList<>(entries.size());
+        for (TextEntry entry : entries) {
+            Path path = entry.getFilePath();
+            if (Files.exists(path)) {
+                docs.add(new IndexDoc(entry.uuid(), entry.entryType(), entry.name(),
+                        new String(Files.readAllBytes(path), StandardCharsets.UTF_8),
+                        Files.getLastModifiedTime(path).toMillis()));
+            } else {
+                docs.add(new IndexDoc(entry.uuid(), entry.entryType(), entry.name(), "", 0));
+            }
+        }
+        writeSearchDocs(docs);
+    }
+
+    // Tasks, projects and events are indexed by their upserts, this picks up rows that have no document yet
+    private void indexEntries(Collection<? extends Entry> entries) throws IOException {
+        writeSearchDocs(entries.stream().map(DBConnection::indexDoc).toList());
+    }
+
+    private static IndexDoc indexDoc(Entry entry) {
+        return new IndexDoc(entry.uuid(), entry.type(), entry.name(), searchBody(entry), 0);
+    }
+
+    private static String searchBody(Entry entry) {
+        List<String> parts = new ArrayList<>();
+        switch (entry) {
+            case TaskEntry task -> {
+                parts.add(task.description());
+                parts.addAll(task.notes());
+                task.subtasks().forEach(sub -> {
+                    parts.add(sub.name());
+                    parts.add(sub.description());
+                });
+            }
+            case ProjectEntry project -> {
+                parts.add(project.description());
+                parts.addAll(project.notes());
+            }
+            default -> { }
+        }
+        parts.addAll(entry.tags());
+        return parts.stream().filter(Objects::nonNull).collect(Collectors.joining("\n"));
+    }
+
+    private void writeSearchDocs(List<IndexDoc> docs) throws IOException {
+        if (docs.isEmpty()) { return; }
+        try (PooledConnection conn = pool.acquire()) {
+            Connection connection = conn.connection();
+            connection.setAutoCommit(false);
+            try {
+                writeSearchDocs(conn, docs);
+                connection.commit();
+            } catch (SQLException | IOException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("SQL error returned for indexing Error: " + e.getMessage());
+        }
+    }
+
+    // Writes into the caller's transaction
+    private static void writeSearchDocs(PooledConnection conn, List<IndexDoc> docs) throws IOException {
+        String uuid = null;
+        try {
+            PreparedStatement docUpsert = conn.prepare(SEARCH_DOC_UPSERT);
+            PreparedStatement docId = conn.prepare("SELECT id FROM search_docs WHERE uuid = ?");
+            PreparedStatement ftsDelete = conn.prepare("DELETE FROM search_index WHERE rowid = ?");
+            PreparedStatement ftsInsert = conn.prepare("INSERT INTO search_index (rowid, name, body) VALUES (?, ?, ?)");
+            for (IndexDoc doc : docs) {
+                uuid = doc.uuid().toString();
+                docUpsert.setString(1, uuid);
+                docUpsert.setString(2, doc.type().name());
+                docUpsert.setLong(3, doc.modified());
+                docUpsert.executeUpdate();
+
+                long id;
+                docId.setString(1, uuid);
+                try (ResultSet result = docId.executeQuery()) {
+                    result.next();
+                    id = result.getLong(1);
+                }
+                ftsDelete.setLong(1, id);
+                ftsDelete.executeUpdate();
+                ftsInsert.setLong(1, id);
+                ftsInsert.setString(2, doc.name());
+                ftsInsert.setString(3, doc.body());
+                ftsInsert.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for indexing: %s Error: %s", uuid, e.getMessage()));
+        }
+    }
+
+    public void removeFromSearchIndex(Collection<UUID> uuids) throws IOException {
+        if (uuids.isEmpty()) { return; }
+        String uuid = null;
+        try (PooledConnection conn = pool.acquire()) {
+            Connection connection = conn.connection();
+            PreparedStatement ftsDelete = conn.prepare(
+                    "DELETE FROM search_index WHERE rowid = (SELECT id FROM search_docs WHERE uuid = ?)");
+            PreparedStatement docDelete = conn.prepare("DELETE FROM search_docs WHERE uuid = ?");
+            connection.setAutoCommit(false);
+            try {
+                for (UUID entryUUID : uuids) {
+                    uuid = entryUUID.toString();
+                    ftsDelete.setString(1, uuid);
+                    ftsDelete.executeUpdate();
+                    docDelete.setString(1, uuid);
+                    docDelete.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for removing index of: %s Error: %s",
+                    uuid, e.getMessage()));
+        }
+    }
+
+    // Uuids of unarchived notes/journals created in [after, before) carrying every tag (case insensitive), null
+    // bounds are open. Lets a search drop entries on metadata before any of their files are read.
+    public Set<UUID> filterTextEntries(EntryType type, List<String> tags, LocalDateTime after, LocalDateTime before)
+            throws IOException {
+        String table = switch (type) {
+            case NOTE -> "notes";
+            case JOURNAL -> "journals";
+            default -> throw new IllegalArgumentException("Not a text entry type: " + type);
+        };
+        StringBuilder query = new StringBuilder("SELECT uuid FROM ").append(table).append(" WHERE archived = false");
+        if (after != null) { query.append(" AND created_at >= ?"); }
+        if (before != null) { query.append(" AND created_at < ?"); }
+        for (int i = 0; i < tags.size(); ++i) {
+            query.append(" AND uuid IN (SELECT entry_uuid FROM entry_tags WHERE tag = ?)");
+        }
+
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query.toString());
+            int param = 1;
+            if (after != null) { ps.setLong(param++, DateTimeUtil.localToUnix(after)); }
+            if (before != null) { ps.setLong(param++, DateTimeUtil.localToUnix(before)); }
+            for (String tag : tags) {
+                ps.setString(param++, tag);
+            }
+            Set<UUID> uuids = new HashSet<>();
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    uuids.add(UUID.fromString(result.getString("uuid")));
+                }
+            }
+            return uuids;
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for filtering: %s Error: %s", table, e.getMessage()));
+        }
+    }
+
+    // matchQuery is fts5 query syntax, see toMatchQuery for plain user input. Best matches first.
+    public List<SearchHit> searchText(EntryType type, String matchQuery, int limit) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(SEARCH_QUERY);
+            ps.setString(1, matchQuery);
+            ps.setString(2, type.name());
+            ps.setInt(3, limit);
+            return execMapHits(ps);
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for search: %s Error: %s", matchQuery, e.getMessage()));
+        }
+    }
+
+    // Same as searchText over every entry type, unarchived entries only
+    public List<SearchHit> searchAll(String matchQuery, int limit) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(SEARCH_ALL_QUERY);
+            ps.setString(1, matchQuery);
+            ps.setInt(2, limit);
+            return execMapHits(ps);
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for search: %s Error: %s", matchQuery, e.getMessage()));
+        }
+    }
+
+    private static List<SearchHit> execMapHits(PreparedStatement ps) throws SQLException {
+        List<SearchHit> hits = new ArrayList<>();
+        try (ResultSet result = ps.executeQuery()) {
+            while (result.next()) {
+                hits.add(new SearchHit(
+                        UUID.fromString(result.getString("uuid")),
+                        EntryType.valueOf(result.getString("entry_type")),
+                        result.getString("name"),
+                        result.getString("snippet").replace('\n', ' '), // Fragments can span lines
+                        result.getDouble("rank")
+                ));
+            }
+        }
+        return hits;
+    }
+
+    // Indexes unarchived tasks, projects and events that have no search document yet, i.e. rows written before
+    // the index covered them (upserts index in the row's transaction). Cheap when there is nothing to do. Returns
+    // entries indexed.
+    public int indexUnindexedEntries() throws IOException {
+        String unindexed = "SELECT * FROM %1$s WHERE archived = false "
+                + "AND NOT EXISTS (SELECT 1 FROM search_docs d WHERE d.uuid = %1$s.uuid)";
+        List<Entry> entries = new ArrayList<>();
+        entries.addAll(entryQuery(String.format(unindexed, "tasks"), TaskEntry.class));
+        entries.addAll(entryQuery(String.format(unindexed, "projects"), ProjectEntry.class));
+        try (PooledConnection conn = pool.acquire()) {
+            entries.addAll(execMapEvents(conn.prepare(String.format(unindexed, "events"))));
+        } catch (SQLException e) {
+            throw new IOException("Error querying events: " + e.getMessage());
+        }
+        indexEntries(entries);
+        return entries.size();
+    }
+
+    // Quotes each word of plain input so punctuation and keywords (AND, NEAR, -) are matched as text rather than
+    // parsed as query syntax, the last word also matches as a prefix so a partly typed word still finds results.
+    // Returns null for input without any words.
+    public static String toMatchQuery(String input) {
+        String[] words = input.trim().split("\\s+");
+        if (words.length == 0 || words[0].isEmpty()) { return null; }
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < words.length; ++i) {
+            if (i > 0) { query.append(' '); }
+            query.append('"').append(words[i].replace("\"", "\"\"")).append('"');
+        }
+        return query.append('*').toString();
+    }
+
+    ////////////
+    // IMPORT //
+    ////////////
+
+    // Copies existing meta files into the body column for rows that do not have one yet, so enabling
+    // DATABASE_STORE_BODIES on an existing install hydrates from sqlite without waiting for each entry to be saved.
+    // Rows whose meta file is missing or unreadable are left as is and reported. Returns the rows imported.
+    public int importMetaFiles() throws IOException {
+        return importMetaFiles("tasks", TaskEntry.class)
+                + importMetaFiles("projects", ProjectEntry.class)
+                + importMetaFiles("notes", TextEntry.class)
+                + importMetaFiles("journals", TextEntry.class);
+    }
+
+    private int importMetaFiles(String table, Class<?> clazz) throws IOException {
+        String selectQuery = String.format("SELECT uuid, meta_path FROM %s WHERE body IS NULL", table);
+        String updateQuery = String.format("UPDATE %s SET body = ? WHERE uuid = ?", table);
+
+        try (PooledConnection conn = pool.acquire()) {
+            Map<String, String> bodies = new LinkedHashMap<>();
+            try (ResultSet result = conn.prepare(selectQuery).executeQuery()) {
+                while (result.next()) {
+                    String metaPath = result.getString("meta_path");
+                    try {
+                        // Round trip through the record so only files that still deserialize are imported
+                        bodies.put(result.getString("uuid"), JSON.writeString(EntryFiles.read(metaPath, clazz)));
+                    } catch (IOException e) {
+                        System.err.printf("Skipped importing %s: %s%n", metaPath, e.getMessage());
+                    }
+                }
+            }
+            if (bodies.isEmpty()) { return 0; }
+
+            Connection connection = conn.connection();
+            PreparedStatement ps = conn.prepare(updateQuery);
+            connection.setAutoCommit(false);
+            try {
+                for (var entry : bodies.entrySet()) {
+                    ps.setString(1, entry.getValue());
+                    ps.setString(2, entry.getKey());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                ps.clearBatch();
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            return bodies.size();
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error importing meta files for: %s Error: %s", table, e.getMessage()));
+        }
+    }
 }
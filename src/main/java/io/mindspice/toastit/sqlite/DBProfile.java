@@ -0,0 +1,58 @@
+package io.mindspice.toastit.sqlite;
+
+import io.mindspice.toastit.util.Settings;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public record DBProfile(
+        String journalMode,
+        String synchronous,
+        long mmapSizeBytes,
+        int cacheSizeKb,
+        String tempStore,
+        int busyTimeoutMs
+) {
+
+    // Sqlite defaults: rollback journal, full fsync on every commit
+    public static DBProfile defaults() {
+        return new DBProfile("DELETE", "FULL", 0, 2000, "DEFAULT", 5000);
+    }
+
+    public static DBProfile fromSettings() {
+        DBProfile d = defaults();
+        return new DBProfile(
+                Settings.DATABASE_JOURNAL_MODE == null ? d.journalMode : Settings.DATABASE_JOURNAL_MODE,
+                Settings.DATABASE_SYNCHRONOUS == null ? d.synchronous : Settings.DATABASE_SYNCHRONOUS,
+                Settings.DATABASE_MMAP_SIZE_MB * 1024L * 1024L,
+                Settings.DATABASE_CACHE_SIZE_KB <= 0 ? d.cacheSizeKb : Settings.DATABASE_CACHE_SIZE_KB,
+                Settings.DATABASE_TEMP_STORE == null ? d.tempStore : Settings.DATABASE_TEMP_STORE,
+                Settings.DATABASE_BUSY_TIMEOUT_MS <= 0 ? d.busyTimeoutMs : Settings.DATABASE_BUSY_TIMEOUT_MS
+        );
+    }
+
+    public List<String> pragmas() {
+        List<String> pragmas = new ArrayList<>(6);
+        // busy_timeout first so the journal_mode switch waits on other connections instead of failing
+        pragmas.add("PRAGMA busy_timeout = " + busyTimeoutMs);
+        pragmas.add("PRAGMA journal_mode = " + journalMode);
+        pragmas.add("PRAGMA synchronous = " + synchronous);
+        pragmas.add("PRAGMA mmap_size = " + mmapSizeBytes);
+        pragmas.add("PRAGMA cache_size = " + -cacheSizeKb); // negative value is KiB instead of pages
+        pragmas.add("PRAGMA temp_store = " + tempStore);
+        return pragmas;
+    }
+
+    // journal_mode=WAL is persisted in the db file, the rest are per connection so this runs on every new connection
+    public void apply(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String pragma : pragmas()) {
+                stmt.execute(pragma);
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.mindspice.toastit.sqlite;
+
+import java.util.UUID;
+
+
+// A row changed after a refresh watermark. entry is null when the row was deleted, archived or otherwise
+// dropped out of the queried set, the in-memory copy should then be removed instead of replaced.
+public record EntryChange<T>(
+        UUID uuid,
+        long revision,
+        T entry
+) {
+
+    public boolean isRemoval() {
+        return entry == null;
+    }
+}
@@ -0,0 +1,58 @@
+package io.mindspice.toastit.sqlite;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+
+public record Migration(
+        int version,
+        String description,
+        Action action
+) {
+
+    @FunctionalInterface
+    public interface Action {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    public static Migration of(int version, String description, List<String> statements) {
+        return new Migration(version, description, conn -> execAll(conn, statements));
+    }
+
+    public static Migration of(int version, String description, String... statements) {
+        return of(version, description, List.of(statements));
+    }
+
+    public static void execAll(Connection connection, List<String> statements) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    // Sqlite can't alter column types or constraints, so changes like that copy into a new table and swap it in.
+    // createTemplate is a CREATE TABLE statement with %s in place of the table name, selectColumns is the
+    // column list (or expressions) read from the old table in the new table's column order. Indexes on the old
+    // table are dropped with it, recreate them in the same migration. Runs inside the migration transaction,
+    // readers on other connections keep seeing the old table until it commits (WAL).
+    public static Action rebuildTable(String table, String createTemplate, String selectColumns) {
+        String tempTable = table + "_rebuild";
+        return conn -> execAll(conn, List.of(
+                "DROP TABLE IF EXISTS " + tempTable,
+                String.format(createTemplate, tempTable),
+                String.format("INSERT INTO %s SELECT %s FROM %s", tempTable, selectColumns, table),
+                "DROP TABLE " + table,
+                String.format("ALTER TABLE %s RENAME TO %s", tempTable, table)
+        ));
+    }
+
+    public Migration andThen(Action next) {
+        return new Migration(version, description, conn -> {
+            action.apply(conn);
+            next.apply(conn);
+        });
+    }
+}
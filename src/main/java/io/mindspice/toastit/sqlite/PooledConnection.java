@@ -0,0 +1,75 @@
+package io.mindspice.toastit.sqlite;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+public class PooledConnection implements AutoCloseable {
+    private static final int MAX_CACHED_STATEMENTS = 64;
+
+    private final Connection connection;
+    private final ConnectionPool pool;
+
+    // Only ever touched by the thread currently holding this connection, so no synchronization needed
+    private final Map<String, PreparedStatement> statementCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() > MAX_CACHED_STATEMENTS) {
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    PooledConnection(Connection connection, ConnectionPool pool) {
+        this.connection = connection;
+        this.pool = pool;
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement ps = statementCache.get(sql);
+        if (ps == null || ps.isClosed()) {
+            ps = connection.prepareStatement(sql);
+            statementCache.put(sql, ps);
+        } else {
+            ps.clearParameters();
+        }
+        return ps;
+    }
+
+    public Connection connection() {
+        return connection;
+    }
+
+    public int cachedStatements() {
+        return statementCache.size();
+    }
+
+    // Returns the connection to the pool, cached statements stay open for the next borrower
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+
+    void closePhysical() {
+        statementCache.values().forEach(PooledConnection::closeQuietly);
+        statementCache.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing database connection: " + e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing cached statement: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.mindspice.toastit.sqlite;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+
+
+public class SchemaMigrator {
+    public static final String VERSION_TABLE = """
+            CREATE TABLE IF NOT EXISTS schema_version (
+                version INTEGER PRIMARY KEY,
+                description TEXT,
+                applied_at INTEGER -- Unix time
+            );
+            """;
+
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(List<Migration> migrations) {
+        this.migrations = migrations.stream().sorted(Comparator.comparingInt(Migration::version)).toList();
+        for (int i = 1; i < this.migrations.size(); ++i) {
+            if (this.migrations.get(i).version() == this.migrations.get(i - 1).version()) {
+                throw new IllegalStateException("Duplicate migration version: " + this.migrations.get(i).version());
+            }
+        }
+    }
+
+    public int latestVersion() {
+        return migrations.isEmpty() ? 0 : migrations.getLast().version();
+    }
+
+    public static int currentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(VERSION_TABLE);
+            try (ResultSet result = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+                return result.next() ? result.getInt(1) : 0;
+            }
+        }
+    }
+
+    // All pending migrations run in one transaction, either the schema ends up at latestVersion() or is untouched
+    public List<Migration> migrate(Connection connection) throws SQLException {
+        int current = currentVersion(connection);
+        List<Migration> pending = migrations.stream().filter(m -> m.version() > current).toList();
+        if (pending.isEmpty()) {
+            return pending;
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+            for (Migration migration : pending) {
+                try {
+                    migration.action().apply(connection);
+                } catch (SQLException e) {
+                    throw new SQLException(String.format("Migration %d (%s) failed: %s",
+                            migration.version(), migration.description(), e.getMessage()), e);
+                }
+                ps.setInt(1, migration.version());
+                ps.setString(2, migration.description());
+                ps.setLong(3, Instant.now().getEpochSecond());
+                ps.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return pending;
+    }
+}
@@ -0,0 +1,16 @@
+package io.mindspice.toastit.sqlite;
+
+import io.mindspice.toastit.enums.EntryType;
+
+import java.util.UUID;
+
+
+// A full text match, snippet is the best matching fragment with matched terms in [brackets]. Lower rank is a
+// better match (bm25)
+public record SearchHit(
+        UUID uuid,
+        EntryType type,
+        String name,
+        String snippet,
+        double rank
+) { }
@@ -1,6 +1,15 @@
 package io.mindspice.toastit.sqlite;
 
+import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.util.BinaryCodec;
+import io.mindspice.toastit.util.JSON;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.List;
+import java.util.stream.Stream;
 
 
 public class TableInit {
@@ -83,6 +92,19 @@ public class TableInit {
 
 
 
+    // Partial index predicates must match the query text exactly (archived = false, not archived = 0)
+    // for the planner to use them, keep these in sync with the WHERE clauses in DBConnection
+    public static List<String> INDEX_STATEMENTS = List.of(
+            "CREATE INDEX IF NOT EXISTS idx_tasks_active ON tasks(due_by) WHERE started = true and archived = false",
+            "CREATE INDEX IF NOT EXISTS idx_tasks_unarchived ON tasks(due_by) WHERE archived = false",
+            "CREATE INDEX IF NOT EXISTS idx_projects_active ON projects(due_by) WHERE started = true and archived = false",
+            "CREATE INDEX IF NOT EXISTS idx_projects_unarchived ON projects(due_by) WHERE archived = false",
+            "CREATE INDEX IF NOT EXISTS idx_events_start ON events(start_time) WHERE archived = false",
+            "CREATE INDEX IF NOT EXISTS idx_events_end ON events(end_time)",
+            "CREATE INDEX IF NOT EXISTS idx_notes_unarchived ON notes(created_at) WHERE archived = false",
+            "CREATE INDEX IF NOT EXISTS idx_journals_unarchived ON journals(created_at) WHERE archived = false"
+    );
+
     public static List<String> INIT_STATEMENTS = List.of(
             EVENT_TABLE,
             TASK_TABLE,
@@ -90,4 +112,278 @@ public class TableInit {
             NOTE_TABLE,
             JOURNAL_TABLE
     );
+
+    // Every insert/update/delete on a tracked table takes the next value of one global sequence, refreshes
+    // then only read rows (and tombstones) with a revision above the last one they saw. Triggers instead of
+    // setting it in the upserts so archive, batch and any future write paths are covered. The WHEN guard
+    // keeps the trigger's own revision update from counting as a change.
+    public static List<String> REVISION_TABLES = List.of(
+            """
+            CREATE TABLE IF NOT EXISTS revision_seq (
+                id INTEGER PRIMARY KEY CHECK (id = 0),
+                value INTEGER NOT NULL
+            );
+            """,
+            "INSERT OR IGNORE INTO revision_seq (id, value) VALUES (0, 0)",
+            """
+            CREATE TABLE IF NOT EXISTS deleted_entries (
+                revision INTEGER PRIMARY KEY,
+                entry_table TEXT NOT NULL,
+                uuid TEXT NOT NULL
+            );
+            """
+    );
+
+    public static List<String> revisionTracking(String table) {
+        return List.of(
+                String.format("ALTER TABLE %s ADD COLUMN revision INTEGER NOT NULL DEFAULT 0", table),
+                String.format("CREATE INDEX IF NOT EXISTS idx_%1$s_revision ON %1$s(revision)", table),
+                String.format("""
+                        CREATE TRIGGER IF NOT EXISTS %1$s_revision_insert AFTER INSERT ON %1$s
+                        BEGIN
+                            UPDATE revision_seq SET value = value + 1;
+                            UPDATE %1$s SET revision = (SELECT value FROM revision_seq) WHERE uuid = NEW.uuid;
+                        END;
+                        """, table),
+                String.format("""
+                        CREATE TRIGGER IF NOT EXISTS %1$s_revision_update AFTER UPDATE ON %1$s
+                        WHEN NEW.revision = OLD.revision
+                        BEGIN
+                            UPDATE revision_seq SET value = value + 1;
+                            UPDATE %1$s SET revision = (SELECT value FROM revision_seq) WHERE uuid = NEW.uuid;
+                        END;
+                        """, table),
+                String.format("""
+                        CREATE TRIGGER IF NOT EXISTS %1$s_revision_delete AFTER DELETE ON %1$s
+                        BEGIN
+                            UPDATE revision_seq SET value = value + 1;
+                            INSERT INTO deleted_entries (revision, entry_table, uuid)
+                                VALUES ((SELECT value FROM revision_seq), '%1$s', OLD.uuid);
+                        END;
+                        """, table)
+        );
+    }
+
+    // Full text index over note/journal names and file contents. search_docs maps an entry to the fts rowid and
+    // records the file mtime that was indexed, so stale documents are found without reading the files
+    public static List<String> SEARCH_TABLES = List.of(
+            """
+            CREATE TABLE IF NOT EXISTS search_docs (
+                id INTEGER PRIMARY KEY, -- rowid in search_index
+                uuid TEXT NOT NULL UNIQUE,
+                entry_type TEXT NOT NULL,
+                modified INTEGER NOT NULL -- File mtime in millis when indexed
+            );
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_search_docs_type ON search_docs(entry_type)",
+            """
+            CREATE VIRTUAL TABLE IF NOT EXISTS search_index USING fts5(
+                name,
+                body,
+                tokenize = 'unicode61 remove_diacritics 2'
+            );
+            """
+    );
+
+    // Version 6 search tables, rebuilt rather than altered since fts5 options can't change after creation. Adds
+    // prefix indexes so the prefix match on the last typed word stays fast on large indexes, and the archived flag.
+    // Documents are rebuilt at startup: TextManager resyncs notes/journals, GlobalSearch indexes the other types.
+    public static List<String> GLOBAL_SEARCH_TABLES = List.of(
+            "DROP TABLE IF EXISTS search_index",
+            "DROP TABLE IF EXISTS search_docs",
+            """
+            CREATE TABLE IF NOT EXISTS search_docs (
+                id INTEGER PRIMARY KEY, -- rowid in search_index
+                uuid TEXT NOT NULL UNIQUE,
+                entry_type TEXT NOT NULL,
+                modified INTEGER NOT NULL, -- File mtime in millis when indexed, 0 for database entries
+                archived BOOLEAN NOT NULL DEFAULT 0
+            );
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_search_docs_type ON search_docs(entry_type)",
+            """
+            CREATE VIRTUAL TABLE IF NOT EXISTS search_index USING fts5(
+                name,
+                body,
+                tokenize = 'unicode61 remove_diacritics 2',
+                prefix = '2 3 4'
+            );
+            """
+    );
+
+    // Global search puts every entry type in search_index. Archiving or deleting a row is mirrored onto its search
+    // document by triggers, so every write path (archive, delete of past events, batches) keeps the index in step
+    // without the entry having to be loaded and reindexed. Archived documents stay indexed but are skipped.
+    public static List<String> searchTracking(String table) {
+        return List.of(
+                String.format("""
+                        CREATE TRIGGER IF NOT EXISTS %1$s_search_archive AFTER UPDATE OF archived ON %1$s
+                        BEGIN
+                            UPDATE search_docs SET archived = NEW.archived WHERE uuid = NEW.uuid;
+                        END;
+                        """, table),
+                String.format("""
+                        CREATE TRIGGER IF NOT EXISTS %1$s_search_delete AFTER DELETE ON %1$s
+                        BEGIN
+                            DELETE FROM search_index WHERE rowid = (SELECT id FROM search_docs WHERE uuid = OLD.uuid);
+                            DELETE FROM search_docs WHERE uuid = OLD.uuid;
+                        END;
+                        """, table)
+        );
+    }
+
+    // The archived flag of the row a search document belongs to, null if the row is gone
+    private static String sourceArchived(String uuid, String type) {
+        return String.format("""
+                CASE %2$s
+                    WHEN 'EVENT' THEN (SELECT archived FROM events WHERE uuid = %1$s)
+                    WHEN 'TASK' THEN (SELECT archived FROM tasks WHERE uuid = %1$s)
+                    WHEN 'PROJECT' THEN (SELECT archived FROM projects WHERE uuid = %1$s)
+                    WHEN 'NOTE' THEN (SELECT archived FROM notes WHERE uuid = %1$s)
+                    WHEN 'JOURNAL' THEN (SELECT archived FROM journals WHERE uuid = %1$s)
+                END""", uuid, type);
+    }
+
+    // Version 10, the archive triggers only follow changes, so documents of rows archived before version 6 (or
+    // indexed after being archived) were searchable. Copies the flag onto existing documents, and new documents
+    // take it from their row when inserted. Upserts index in the row's transaction, so the row is always there.
+    public static List<String> SEARCH_ARCHIVED_BACKFILL = List.of(
+            String.format("UPDATE search_docs SET archived = coalesce(%s, archived)",
+                    sourceArchived("search_docs.uuid", "search_docs.entry_type")),
+            String.format("""
+                    CREATE TRIGGER IF NOT EXISTS search_docs_archived AFTER INSERT ON search_docs
+                    BEGIN
+                        UPDATE search_docs SET archived = coalesce(%s, 0) WHERE id = NEW.id;
+                    END;
+                    """, sourceArchived("NEW.uuid", "NEW.entry_type"))
+    );
+
+    // One row per tag of every entry, so tag lookups are an index search instead of parsing each row's JSON tags.
+    // Case insensitive like the tag filters. Triggers keep it in step with the tags column on every write path.
+    public static List<String> TAG_TABLES = List.of(
+            """
+            CREATE TABLE IF NOT EXISTS entry_tags (
+                tag TEXT NOT NULL COLLATE NOCASE,
+                entry_uuid TEXT NOT NULL,
+                entry_type TEXT NOT NULL,
+                PRIMARY KEY (tag, entry_uuid)
+            ) WITHOUT ROWID;
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_entry_tags_uuid ON entry_tags(entry_uuid)"
+    );
+
+    // Copies the existing rows' tags, then adds the triggers
+    public static List<String> tagTracking(String table, EntryType type) {
+        // Invalid JSON indexes as no tags rather than failing the write
+        String insertTags = String.format("""
+                INSERT OR IGNORE INTO entry_tags (tag, entry_uuid, entry_type)
+                    SELECT value, NEW.uuid, '%s'
+                    FROM json_each(CASE WHEN json_valid(NEW.tags) THEN NEW.tags ELSE '[]' END)
+                    WHERE type = 'text';
+                """, type.name());
+        return List.of(
+                String.format("""
+                        INSERT OR IGNORE INTO entry_tags (tag, entry_uuid, entry_type)
+                            SELECT j.value, t.uuid, '%2$s' FROM %1$s t, json_each(t.tags) j
+                            WHERE json_valid(t.tags) AND j.type = 'text'
+                        """, table, type.name()),
+                String.format("""
+                        CREATE TRIGGER IF NOT EXISTS %1$s_tags_insert AFTER INSERT ON %1$s
+                        BEGIN
+                            %2$s
+                        END;
+                        """, table, insertTags),
+                String.format("""
+                        CREATE TRIGGER IF NOT EXISTS %1$s_tags_update AFTER UPDATE OF tags ON %1$s
+                        WHEN NEW.tags IS NOT OLD.tags
+                        BEGIN
+                            DELETE FROM entry_tags WHERE entry_uuid = OLD.uuid;
+                            %2$s
+                        END;
+                        """, table, insertTags),
+                String.format("""
+                        CREATE TRIGGER IF NOT EXISTS %1$s_tags_delete AFTER DELETE ON %1$s
+                        BEGIN
+                            DELETE FROM entry_tags WHERE entry_uuid = OLD.uuid;
+                        END;
+                        """, table)
+        );
+    }
+
+    // Version 8 event row format, mapped without parsing strings. uuid_bin and linked_bin hold the uuids as 16 raw
+    // bytes, next to the text uuids the other tables still join on, reminders_bin the reminders in the BinaryCodec
+    // record format. Written by the upsert, version 11 fills them for older rows and drops the text copies.
+    public static List<String> EVENT_BINARY_COLUMNS = List.of(
+            "ALTER TABLE events ADD COLUMN uuid_bin BLOB",
+            "ALTER TABLE events ADD COLUMN linked_bin BLOB",
+            "ALTER TABLE events ADD COLUMN reminders_bin BLOB",
+            "UPDATE events SET uuid_bin = unhex(replace(uuid, '-', '')), linked_bin = unhex(replace(linked_uuid, '-', ''))"
+    );
+
+    // Version 11, events written before version 8 get their binary columns, reminders_bin is encoded from the JSON
+    // column here since sqlite can't. The JSON reminders and text linked_uuid are then cleared, the upsert no longer
+    // writes them. The text uuid stays, it is the key the tag, search and revision tables join on.
+    public static void moveEventColumnsToBinary(Connection conn) throws SQLException {
+        Migration.execAll(conn, List.of(
+                "UPDATE events SET uuid_bin = unhex(replace(uuid, '-', '')) WHERE uuid_bin IS NULL",
+                "UPDATE events SET linked_bin = unhex(replace(linked_uuid, '-', '')) WHERE linked_bin IS NULL"
+        ));
+        try (PreparedStatement select = conn.prepareStatement(
+                "SELECT uuid, reminders FROM events WHERE reminders_bin IS NULL");
+             PreparedStatement update = conn.prepareStatement("UPDATE events SET reminders_bin = ? WHERE uuid = ?");
+             ResultSet result = select.executeQuery()) {
+            while (result.next()) {
+                String reminders = result.getString("reminders");
+                update.setBytes(1, BinaryCodec.encodeReminders(
+                        reminders != null ? JSON.jsonArrayToReminderList(reminders) : List.of()));
+                update.setString(2, result.getString("uuid"));
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+        Migration.execAll(conn, List.of(
+                "UPDATE events SET reminders = NULL WHERE reminders_bin IS NOT NULL",
+                "UPDATE events SET linked_uuid = NULL WHERE linked_bin IS NOT NULL"
+        ));
+    }
+
+    // Applied in order by SchemaMigrator, append new versions to the end and never edit a shipped one.
+    // Version 1 is the original create-if-not-exists schema so pre-migration databases adopt it as a no-op.
+    public static List<Migration> MIGRATIONS = List.of(
+            Migration.of(1, "Create base tables", INIT_STATEMENTS),
+            Migration.of(2, "Add indexes for refresh queries", INDEX_STATEMENTS),
+            Migration.of(3, "Add serialized entry body columns",
+                    "ALTER TABLE tasks ADD COLUMN body TEXT", // JSON of the full entry, null when stored in meta file only
+                    "ALTER TABLE projects ADD COLUMN body TEXT",
+                    "ALTER TABLE notes ADD COLUMN body TEXT",
+                    "ALTER TABLE journals ADD COLUMN body TEXT"
+            ),
+            Migration.of(4, "Add revision tracking to tasks and projects", Stream.of(
+                    REVISION_TABLES, revisionTracking("tasks"), revisionTracking("projects")
+            ).flatMap(List::stream).toList()),
+            Migration.of(5, "Add full text search index for notes and journals", SEARCH_TABLES),
+            Migration.of(6, "Extend search index to all entry types", Stream.of(
+                    GLOBAL_SEARCH_TABLES,
+                    Stream.of("events", "tasks", "projects", "notes", "journals")
+                            .map(TableInit::searchTracking)
+                            .flatMap(List::stream)
+                            .toList()
+            ).flatMap(List::stream).toList()),
+            Migration.of(7, "Add entry_tags table", Stream.of(
+                    TAG_TABLES,
+                    tagTracking("events", EntryType.EVENT),
+                    tagTracking("tasks", EntryType.TASK),
+                    tagTracking("projects", EntryType.PROJECT),
+                    tagTracking("notes", EntryType.NOTE),
+                    tagTracking("journals", EntryType.JOURNAL)
+            ).flatMap(List::stream).toList()),
+            Migration.of(8, "Add binary uuid and reminder columns to events", EVENT_BINARY_COLUMNS),
+            // Serves the event window (end_time range) and the past event pages (ordered by end_time, uuid)
+            Migration.of(9, "Add event end time index for windowed loading",
+                    "CREATE INDEX IF NOT EXISTS idx_events_ended ON events(end_time, uuid) WHERE archived = false"
+            ),
+            Migration.of(10, "Backfill archived flag of search documents", SEARCH_ARCHIVED_BACKFILL),
+            new Migration(11, "Move event reminders and linked uuids to binary columns",
+                    TableInit::moveEventColumnsToBinary)
+    );
 }
@@ -0,0 +1,501 @@
+package io.mindspice.toastit.util;
+
+import io.mindspice.toastit.entries.project.ProjectEntry;
+import io.mindspice.toastit.entries.task.SubTask;
+import io.mindspice.toastit.entries.task.TaskEntry;
+import io.mindspice.toastit.entries.text.TextEntry;
+import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.enums.NotificationLevel;
+import io.mindspice.toastit.notification.Reminder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+
+// Compact binary meta files. A file is the 4 byte MAGIC, a format version byte, a kind byte (which record follows)
+// and the record. Records are a sequence of tagged fields, key = field number << 3 | wire type, followed by a
+// varint (booleans, zigzag epoch seconds for times), or a length and bytes (strings, uuids, nested records).
+// List fields repeat their field and are absent when empty, so are null values.
+// Evolving the schema: readers skip field numbers they don't know and use defaults for missing ones, so fields
+// can be added with new numbers and old ones retired, never reuse a number or change its wire type. Bump VERSION
+// only for changes old readers can't skip, they refuse files with a newer version instead of misreading them.
+public class BinaryCodec implements EntryCodec {
+    private static final byte[] MAGIC = {0, 'T', 'I', 'B'}; // Leading 0 never starts a json/text file
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 2;
+
+    private static final int VARINT = 0;
+    private static final int LEN = 2;
+
+    private static final int KIND_TASK = 1;
+    private static final int KIND_PROJECT = 2;
+    private static final int KIND_TEXT = 3;
+    // Same as DateTimeUtil.MAX, without needing the date settings that DateTimeUtil loads with
+    private static final LocalDateTime UNSET_TIME = LocalDateTime.of(9999, Month.DECEMBER, 31, 0, 0);
+
+    public static boolean isBinary(byte[] data) {
+        if (data.length < HEADER_SIZE) { return false; }
+        for (int i = 0; i < MAGIC.length; ++i) {
+            if (data[i] != MAGIC[i]) { return false; }
+        }
+        return true;
+    }
+
+    @Override
+    public byte[] encode(Object entry) throws IOException {
+        Out out = new Out();
+        out.bytes.write(MAGIC);
+        out.bytes.write(VERSION);
+        switch (entry) {
+            case TaskEntry task -> {
+                out.bytes.write(KIND_TASK);
+                writeTask(out, task);
+            }
+            case ProjectEntry project -> {
+                out.bytes.write(KIND_PROJECT);
+                writeProject(out, project);
+            }
+            case TextEntry text -> {
+                out.bytes.write(KIND_TEXT);
+                writeText(out, text);
+            }
+            default -> throw new IOException("No binary encoding for: " + entry.getClass().getSimpleName());
+        }
+        return out.bytes.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] data, Class<T> clazz) throws IOException {
+        if (!isBinary(data)) {
+            throw new IOException("Not a binary entry file");
+        }
+        int version = data[MAGIC.length];
+        if (version > VERSION) {
+            throw new IOException("Entry file version " + version + " is newer than supported: " + VERSION);
+        }
+        int kind = data[MAGIC.length + 1];
+        In in = new In(data, HEADER_SIZE, data.length);
+        Object entry = switch (kind) {
+            case KIND_TASK -> readTask(in);
+            case KIND_PROJECT -> readProject(in);
+            case KIND_TEXT -> readText(in);
+            default -> throw new IOException("Unknown entry kind: " + kind);
+        };
+        if (!clazz.isInstance(entry)) {
+            throw new IOException("Entry file holds " + entry.getClass().getSimpleName() + ", not " + clazz.getSimpleName());
+        }
+        return clazz.cast(entry);
+    }
+
+    // A reminder list on its own, no header, for database columns
+    public static byte[] encodeReminders(List<Reminder> reminders) {
+        Out out = new Out();
+        reminders.forEach(reminder -> out.message(1, r -> writeReminder(r, reminder)));
+        return out.bytes.toByteArray();
+    }
+
+    public static List<Reminder> decodeReminders(byte[] data) throws IOException {
+        In in = new In(data, 0, data.length);
+        List<Reminder> reminders = new ArrayList<>();
+        while (in.hasField()) {
+            if (in.field() == 1) {
+                reminders.add(readReminder(in.message()));
+            } else {
+                in.skip();
+            }
+        }
+        return reminders;
+    }
+
+    public static byte[] uuidBytes(UUID uuid) {
+        return ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+    }
+
+    public static UUID uuidOf(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    ////////////
+    // Writes //
+    ////////////
+
+    private static void writeTask(Out out, TaskEntry task) {
+        out.string(1, task.name());
+        out.bool(2, task.started());
+        out.bool(3, task.completed());
+        task.subtasks().forEach(subTask -> out.message(4, sub -> writeSubTask(sub, subTask)));
+        out.string(5, task.description());
+        task.notes().forEach(note -> out.string(6, note));
+        task.tags().forEach(tag -> out.string(7, tag));
+        out.time(8, task.dueBy());
+        out.time(9, task.startedAt());
+        out.time(10, task.completedAt());
+        task.reminders().forEach(reminder -> out.message(11, r -> writeReminder(r, reminder)));
+        out.uuid(12, task.uuid());
+        out.path(13, task.basePath());
+    }
+
+    private static void writeSubTask(Out out, SubTask subTask) {
+        out.string(1, subTask.name());
+        out.string(2, subTask.description());
+        out.bool(3, subTask.completed());
+        out.time(4, subTask.completedAt());
+    }
+
+    private static void writeReminder(Out out, Reminder reminder) {
+        out.time(1, reminder.time());
+        out.string(2, reminder.level() == null ? null : reminder.level().name());
+    }
+
+    private static void writeProject(Out out, ProjectEntry project) {
+        out.string(1, project.name());
+        out.bool(2, project.started());
+        out.bool(3, project.completed());
+        project.tasks().forEach(task -> out.uuid(4, task));
+        out.string(5, project.description());
+        project.notes().forEach(note -> out.string(6, note));
+        project.tags().forEach(tag -> out.string(7, tag));
+        out.path(8, project.projectPath());
+        out.time(9, project.dueBy());
+        out.time(10, project.startedAt());
+        out.time(11, project.completedAt());
+        project.reminders().forEach(reminder -> out.message(12, r -> writeReminder(r, reminder)));
+        out.uuid(13, project.uuid());
+        out.path(14, project.basePath());
+        out.string(15, project.openWith());
+    }
+
+    private static void writeText(Out out, TextEntry text) {
+        out.string(1, text.entryType().name());
+        out.string(2, text.name());
+        out.time(3, text.createdAt());
+        text.tags().forEach(tag -> out.string(4, tag));
+        out.uuid(5, text.uuid());
+        out.path(6, text.basePath());
+    }
+
+    ///////////
+    // Reads //
+    ///////////
+
+    private static TaskEntry readTask(In in) throws IOException {
+        String name = "";
+        boolean started = false;
+        boolean completed = false;
+        List<SubTask> subtasks = new ArrayList<>();
+        String description = "";
+        List<String> notes = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        LocalDateTime dueBy = UNSET_TIME;
+        LocalDateTime startedAt = UNSET_TIME;
+        LocalDateTime completedAt = UNSET_TIME;
+        List<Reminder> reminders = new ArrayList<>();
+        UUID uuid = null;
+        Path basePath = null;
+
+        while (in.hasField()) {
+            switch (in.field()) {
+                case 1 -> name = in.string();
+                case 2 -> started = in.bool();
+                case 3 -> completed = in.bool();
+                case 4 -> subtasks.add(readSubTask(in.message()));
+                case 5 -> description = in.string();
+                case 6 -> notes.add(in.string());
+                case 7 -> tags.add(in.string());
+                case 8 -> dueBy = in.time();
+                case 9 -> startedAt = in.time();
+                case 10 -> completedAt = in.time();
+                case 11 -> reminders.add(readReminder(in.message()));
+                case 12 -> uuid = in.uuid();
+                case 13 -> basePath = in.path();
+                default -> in.skip();
+            }
+        }
+        return new TaskEntry(name, started, completed, subtasks, description, notes, tags, dueBy, startedAt,
+                completedAt, reminders, required(uuid), basePath);
+    }
+
+    private static SubTask readSubTask(In in) throws IOException {
+        String name = "";
+        String description = "";
+        boolean completed = false;
+        LocalDateTime completedAt = UNSET_TIME;
+
+        while (in.hasField()) {
+            switch (in.field()) {
+                case 1 -> name = in.string();
+                case 2 -> description = in.string();
+                case 3 -> completed = in.bool();
+                case 4 -> completedAt = in.time();
+                default -> in.skip();
+            }
+        }
+        return new SubTask(name, description, completed, completedAt);
+    }
+
+    private static Reminder readReminder(In in) throws IOException {
+        LocalDateTime time = UNSET_TIME;
+        NotificationLevel level = NotificationLevel.NORMAL;
+
+        while (in.hasField()) {
+            switch (in.field()) {
+                case 1 -> time = in.time();
+                case 2 -> level = levelOf(in.string());
+                default -> in.skip();
+            }
+        }
+        return new Reminder(time, level);
+    }
+
+    // Levels this version doesn't know (written by a newer one) read as the default like an unknown field would,
+    // rather than failing the whole entry
+    private static NotificationLevel levelOf(String name) {
+        try {
+            return NotificationLevel.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return NotificationLevel.NORMAL;
+        }
+    }
+
+    private static ProjectEntry readProject(In in) throws IOException {
+        String name = "";
+        boolean started = false;
+        boolean completed = false;
+        List<UUID> tasks = new ArrayList<>();
+        String description = "";
+        List<String> notes = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        Path projectPath = Path.of("/");
+        LocalDateTime dueBy = UNSET_TIME;
+        LocalDateTime startedAt = UNSET_TIME;
+        LocalDateTime completedAt = UNSET_TIME;
+        List<Reminder> reminders = new ArrayList<>();
+        UUID uuid = null;
+        Path basePath = null;
+        String openWith = "";
+
+        while (in.hasField()) {
+            switch (in.field()) {
+                case 1 -> name = in.string();
+                case 2 -> started = in.bool();
+                case 3 -> completed = in.bool();
+                case 4 -> tasks.add(in.uuid());
+                case 5 -> description = in.string();
+                case 6 -> notes.add(in.string());
+                case 7 -> tags.add(in.string());
+                case 8 -> projectPath = in.path();
+                case 9 -> dueBy = in.time();
+                case 10 -> startedAt = in.time();
+                case 11 -> completedAt = in.time();
+                case 12 -> reminders.add(readReminder(in.message()));
+                case 13 -> uuid = in.uuid();
+                case 14 -> basePath = in.path();
+                case 15 -> openWith = in.string();
+                default -> in.skip();
+            }
+        }
+        return new ProjectEntry(name, started, completed, tasks, null, description, notes, tags, projectPath, dueBy,
+                startedAt, completedAt, reminders, required(uuid), basePath, openWith);
+    }
+
+    private static TextEntry readText(In in) throws IOException {
+        EntryType entryType = EntryType.NOTE;
+        String name = "";
+        LocalDateTime createdAt = UNSET_TIME;
+        List<String> tags = new ArrayList<>();
+        UUID uuid = null;
+        Path basePath = null;
+
+        while (in.hasField()) {
+            switch (in.field()) {
+                case 1 -> entryType = EntryType.valueOf(in.string());
+                case 2 -> name = in.string();
+                case 3 -> createdAt = in.time();
+                case 4 -> tags.add(in.string());
+                case 5 -> uuid = in.uuid();
+                case 6 -> basePath = in.path();
+                default -> in.skip();
+            }
+        }
+        return new TextEntry(entryType, name, createdAt, tags, required(uuid), basePath);
+    }
+
+    private static UUID required(UUID uuid) throws IOException {
+        if (uuid == null) {
+            throw new IOException("Entry file has no uuid");
+        }
+        return uuid;
+    }
+
+    //////////////
+    // Encoding //
+    //////////////
+
+    private static final class Out {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+
+        void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                bytes.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            bytes.write((int) value);
+        }
+
+        void key(int field, int wireType) {
+            varint((long) field << 3 | wireType);
+        }
+
+        void bool(int field, boolean value) {
+            key(field, VARINT);
+            varint(value ? 1 : 0);
+        }
+
+        void time(int field, LocalDateTime time) {
+            if (time == null) { return; }
+            long seconds = time.toEpochSecond(ZoneOffset.UTC);
+            key(field, VARINT);
+            varint((seconds << 1) ^ (seconds >> 63)); // Zigzag, pre 1970 times stay short
+        }
+
+        void bytes(int field, byte[] value) {
+            key(field, LEN);
+            varint(value.length);
+            bytes.writeBytes(value);
+        }
+
+        void string(int field, String value) {
+            if (value == null) { return; }
+            bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void path(int field, Path path) {
+            if (path == null) { return; }
+            string(field, path.toString());
+        }
+
+        void uuid(int field, UUID uuid) {
+            if (uuid == null) { return; }
+            bytes(field, uuidBytes(uuid));
+        }
+
+        void message(int field, Consumer<Out> writer) {
+            Out nested = new Out();
+            writer.accept(nested);
+            bytes(field, nested.bytes.toByteArray());
+        }
+    }
+
+    private static final class In {
+        private final byte[] data;
+        private int pos;
+        private final int end;
+        private int wireType;
+
+        In(byte[] data, int start, int end) {
+            this.data = data;
+            this.pos = start;
+            this.end = end;
+        }
+
+        boolean hasField() {
+            return pos < end;
+        }
+
+        // Reads the next key, returns its field number
+        int field() throws IOException {
+            long key = varint();
+            wireType = (int) (key & 0x7);
+            return (int) (key >>> 3);
+        }
+
+        long varint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= end) {
+                    throw new IOException("Truncated entry file");
+                }
+                byte b = data[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) { return value; }
+            }
+            throw new IOException("Malformed varint in entry file");
+        }
+
+        private int length() throws IOException {
+            expect(LEN);
+            long length = varint();
+            if (length < 0 || length > end - pos) {
+                throw new IOException("Truncated entry file");
+            }
+            return (int) length;
+        }
+
+        private void expect(int type) throws IOException {
+            if (wireType != type) {
+                throw new IOException("Unexpected wire type " + wireType + " in entry file");
+            }
+        }
+
+        boolean bool() throws IOException {
+            expect(VARINT);
+            return varint() != 0;
+        }
+
+        LocalDateTime time() throws IOException {
+            expect(VARINT);
+            long zigzag = varint();
+            return LocalDateTime.ofEpochSecond((zigzag >>> 1) ^ -(zigzag & 1), 0, ZoneOffset.UTC);
+        }
+
+        String string() throws IOException {
+            int length = length();
+            String value = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        Path path() throws IOException {
+            return Path.of(string());
+        }
+
+        UUID uuid() throws IOException {
+            int length = length();
+            if (length != 16) {
+                throw new IOException("Invalid uuid length in entry file: " + length);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data, pos, 16);
+            pos += 16;
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+
+        In message() throws IOException {
+            int length = length();
+            In nested = new In(data, pos, pos + length);
+            pos += length;
+            return nested;
+        }
+
+        void skip() throws IOException {
+            switch (wireType) {
+                case VARINT -> varint();
+                case LEN -> {
+                    int length = length(); // Before pos is read, length() moves it past the length varint
+                    pos += length;
+                }
+                default -> throw new IOException("Unknown wire type " + wireType + " in entry file");
+            }
+        }
+    }
+}
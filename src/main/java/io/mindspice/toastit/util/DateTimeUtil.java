@@ -17,6 +17,8 @@ public class DateTimeUtil {
     public static DateTimeFormatter dateTimeShortFormatter;
 
     public static LocalDateTime MAX = LocalDateTime.of(9999,Month.DECEMBER, 31,0,0,0).truncatedTo(ChronoUnit.MINUTES);
+    // Looked up once, systemDefault() clones the default TimeZone on every call and row mapping converts per column
+    private static final ZoneId ZONE = ZoneId.systemDefault();
 
 
     static {
@@ -67,11 +69,11 @@ public class DateTimeUtil {
 
     public static LocalDateTime unixToLocal(long unixTime) {
         Instant inst = Instant.ofEpochSecond(unixTime);
-        return LocalDateTime.ofInstant(inst, ZoneId.systemDefault()).truncatedTo(ChronoUnit.MINUTES);
+        return LocalDateTime.ofInstant(inst, ZONE).truncatedTo(ChronoUnit.MINUTES);
     }
 
     public static long localToUnix(LocalDateTime dataTime) {
-        return dataTime.atZone(ZoneId.systemDefault()).toInstant().getEpochSecond();
+        return dataTime.atZone(ZONE).toInstant().getEpochSecond();
     }
 
     public static long delayToDateTime(LocalDateTime dateTime) {
@@ -0,0 +1,112 @@
+package io.mindspice.toastit.util;
+
+import io.mindspice.toastit.enums.FsyncPolicy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+
+// Replaces files without ever exposing a partial write: the content goes to a temp file in the same directory
+// which is then atomically renamed over the target. Readers see the old file or the new one. How much is forced to
+// disk first follows Settings.FILE_FSYNC_POLICY. The temp file (.<name>.<random>.tmp) is created with the default
+// mode and takes the replaced file's permissions, so a rewrite never changes who can read an entry. A crash between
+// create and rename leaves the temp file behind, removeOrphanedTempFiles clears them at startup.
+public class DurableWriter {
+    private static final long ORPHAN_AGE_MS = 60_000; // Younger temp files may belong to a write still running
+
+    public static void writeString(Path target, String content) throws IOException {
+        write(target, content.getBytes(StandardCharsets.UTF_8), Settings.FILE_FSYNC_POLICY);
+    }
+
+    public static void write(Path target, byte[] content, FsyncPolicy policy) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Path temp = createTempFile(dir, target.getFileName().toString());
+        try {
+            if (Files.exists(target)) {
+                copyPermissions(target, temp);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (policy != FsyncPolicy.NONE) {
+                    channel.force(false);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (policy == FsyncPolicy.DIRECTORY) {
+            forceDirectory(dir);
+        }
+    }
+
+    // Files.createTempFile would create it 0600 on posix systems
+    private static Path createTempFile(Path dir, String name) throws IOException {
+        while (true) {
+            String suffix = Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36);
+            Path temp = dir.resolve("." + name + "." + suffix + ".tmp");
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                // Taken by another write, pick another name
+            }
+        }
+    }
+
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (UnsupportedOperationException e) {
+            // Not a posix file system (windows), the file keeps the default permissions
+        }
+    }
+
+    // Deletes temp files left under root by writes that never reached the rename. Returns the number deleted.
+    public static int removeOrphanedTempFiles(Path root) throws IOException {
+        if (!Files.isDirectory(root)) { return 0; }
+        long cutoff = System.currentTimeMillis() - ORPHAN_AGE_MS;
+        List<Path> orphans;
+        try (Stream<Path> files = Files.walk(root)) {
+            orphans = files.filter(file -> {
+                String name = file.getFileName().toString();
+                try {
+                    return name.startsWith(".") && name.endsWith(".tmp") && Files.isRegularFile(file)
+                            && Files.getLastModifiedTime(file).toMillis() < cutoff;
+                } catch (IOException e) {
+                    return false; // Gone already
+                }
+            }).toList();
+        }
+        for (Path orphan : orphans) {
+            Files.deleteIfExists(orphan);
+        }
+        return orphans.size();
+    }
+
+    private static void forceDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories can't be opened/forced on some platforms (windows), the rename is still atomic there
+        }
+    }
+}
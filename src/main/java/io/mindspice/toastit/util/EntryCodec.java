@@ -0,0 +1,12 @@
+package io.mindspice.toastit.util;
+
+import java.io.IOException;
+
+
+// Encoding of entry records (TaskEntry, ProjectEntry, TextEntry) to and from their meta files
+public interface EntryCodec {
+
+    byte[] encode(Object entry) throws IOException;
+
+    <T> T decode(byte[] data, Class<T> clazz) throws IOException;
+}
@@ -0,0 +1,36 @@
+package io.mindspice.toastit.util;
+
+import io.mindspice.toastit.enums.EntryFileFormat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+// Reads and writes entry meta files. Writes use the codec for Settings.ENTRY_FILE_FORMAT through DurableWriter,
+// reads detect the format from the file header, so json files written before a switch to BINARY (or edited by
+// hand) keep loading and are converted the next time the entry is saved
+public class EntryFiles {
+    public static final EntryCodec JSON_CODEC = new JsonCodec();
+    public static final EntryCodec BINARY_CODEC = new BinaryCodec();
+
+    public static EntryCodec codec(EntryFileFormat format) {
+        return format == EntryFileFormat.BINARY ? BINARY_CODEC : JSON_CODEC;
+    }
+
+    public static void write(Path path, Object entry) throws IOException {
+        DurableWriter.write(path, codec(Settings.ENTRY_FILE_FORMAT).encode(entry), Settings.FILE_FSYNC_POLICY);
+    }
+
+    public static <T> T read(Path path, Class<T> clazz) throws IOException {
+        return decode(Files.readAllBytes(path), clazz);
+    }
+
+    public static <T> T read(String path, Class<T> clazz) throws IOException {
+        return read(Path.of(path), clazz);
+    }
+
+    public static <T> T decode(byte[] data, Class<T> clazz) throws IOException {
+        return BinaryCodec.isBinary(data) ? BINARY_CODEC.decode(data, clazz) : JSON_CODEC.decode(data, clazz);
+    }
+}
@@ -1,17 +1,24 @@
 package io.mindspice.toastit.util;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.mindspice.toastit.enums.NotificationLevel;
 import io.mindspice.toastit.notification.Reminder;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -21,6 +28,20 @@ public class JSON {
     private static final TypeReference<List<Long>> longList = new TypeReference<>() { };
     private static final TypeReference<List<Reminder.Stub>> reminderList = new TypeReference<>() { };
 
+    // Readers/writers are immutable and thread safe, built once instead of per call. Created after the mapper is
+    // configured below, they copy its config
+    private static final ObjectWriter prettyWriter;
+    private static final ObjectWriter writer;
+    private static final ObjectReader stringListReader;
+    private static final ObjectReader longListReader;
+    private static final ObjectReader reminderListReader;
+    private static final ClassValue<ObjectReader> readers = new ClassValue<>() {
+        @Override
+        protected ObjectReader computeValue(Class<?> type) {
+            return objectMapper.readerFor(type);
+        }
+    };
+
     static {
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.setVisibility(objectMapper.getSerializationConfig().getDefaultVisibilityChecker()
@@ -34,60 +55,133 @@ public class JSON {
 
         // Register the module with the ObjectMapper
         objectMapper.registerModule(module);
+
+        prettyWriter = objectMapper.writerWithDefaultPrettyPrinter();
+        writer = objectMapper.writer();
+        stringListReader = objectMapper.readerFor(stringList);
+        longListReader = objectMapper.readerFor(longList);
+        reminderListReader = objectMapper.readerFor(reminderList);
     }
 
     public static String writePretty(Object obj) throws JsonProcessingException {
-        return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
+        return prettyWriter.writeValueAsString(obj);
     }
 
     public static String writeString(Object obj) throws JsonProcessingException {
-        return objectMapper.writeValueAsString(obj);
+        return writer.writeValueAsString(obj);
     }
 
     public static <T> T loadObjectFromFile(Path path, Class<T> clazz) throws IOException {
-        return JSON.objectMapper.readValue(path.toFile(), clazz);
+        return readers.get(clazz).readValue(path.toFile());
     }
 
     public static <T> T loadObjectFromFile(String path, Class<T> clazz) throws IOException {
-        return JSON.objectMapper.readValue(new File(path), clazz);
+        return readers.get(clazz).readValue(new File(path));
     }
 
     public static <T> T read(String json, Class<T> clazz) throws JsonProcessingException {
-        return objectMapper.readValue(json, clazz);
+        return readers.get(clazz).readValue(json);
     }
 
+    public static <T> T read(byte[] json, Class<T> clazz) throws IOException {
+        return readers.get(clazz).readValue(json);
+    }
+
+    // The tag/reminder/epoch array parsers below are called for every row mapped from sqlite. They walk the
+    // tokens of the (tiny) array directly, anything other than the expected shape falls back to databind, which
+    // also handles the error reporting
+
     public static List<String> jsonArrayToStringList(String arrayString) {
-        try {
-            return objectMapper.readValue(arrayString, stringList);
+        try (JsonParser parser = objectMapper.getFactory().createParser(arrayString)) {
+            if (parser.nextToken() == JsonToken.START_ARRAY) {
+                List<String> list = new ArrayList<>();
+                JsonToken token;
+                while ((token = parser.nextToken()) == JsonToken.VALUE_STRING) {
+                    list.add(parser.getText());
+                }
+                if (token == JsonToken.END_ARRAY) { return list; }
+            }
         } catch (JsonProcessingException e) {
+            // Fall through to databind
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown for a String source
+        }
+        try {
+            return stringListReader.readValue(arrayString);
+        } catch (IOException | RuntimeException e) {
             System.err.println("Failed converting json of: " + arrayString + " to list");
             return List.of();
         }
     }
 
     public static List<LocalDateTime> arrayStringToDataTimeList(String arrayString) {
-        try {
-            List<Long> epochTimes = objectMapper.readValue(arrayString, longList);
-            return epochTimes.stream().map(DateTimeUtil::unixToLocal).toList();
+        return arrayStringToEpochList(arrayString).stream().map(DateTimeUtil::unixToLocal).toList();
+    }
+
+    public static List<Long> arrayStringToEpochList(String arrayString) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(arrayString)) {
+            if (parser.nextToken() == JsonToken.START_ARRAY) {
+                List<Long> list = new ArrayList<>();
+                JsonToken token;
+                while ((token = parser.nextToken()) == JsonToken.VALUE_NUMBER_INT) {
+                    list.add(parser.getLongValue());
+                }
+                if (token == JsonToken.END_ARRAY) { return list; }
+            }
         } catch (JsonProcessingException e) {
+            // Fall through to databind
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown for a String source
+        }
+        try {
+            return longListReader.readValue(arrayString);
+        } catch (IOException | RuntimeException e) {
             System.err.println("Failed converting json of: " + arrayString + " to list");
             return List.of();
         }
     }
 
-    public static List<Long> arrayStringToEpochList(String arrayString) {
+    private static NotificationLevel levelOrNull(String name) {
         try {
-            return objectMapper.readValue(arrayString, longList);
-        } catch (JsonProcessingException e) {
-            System.err.println("Failed converting json of: " + arrayString + " to list");
-            return List.of();
+            return NotificationLevel.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
         }
     }
 
+    // Reminder stubs are stored as [{"time":epochSec,"level":"NAME"}, ...]
     public static List<Reminder> jsonArrayToReminderList(String arrayString) {
-        try {
-            return objectMapper.readValue(arrayString, reminderList).stream().map(Reminder.Stub::asFull).toList();
+        try (JsonParser parser = objectMapper.getFactory().createParser(arrayString)) {
+            if (parser.nextToken() == JsonToken.START_ARRAY) {
+                List<Reminder> list = new ArrayList<>();
+                JsonToken token;
+                while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                    Long time = null;
+                    NotificationLevel level = null;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if (field.equals("time") && value == JsonToken.VALUE_NUMBER_INT) {
+                            time = parser.getLongValue();
+                        } else if (field.equals("level") && value == JsonToken.VALUE_STRING) {
+                            level = levelOrNull(parser.getText());
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    if (time == null || level == null) { break; } // Databind reports the bad reminder
+                    list.add(new Reminder.Stub(time, level).asFull());
+                }
+                if (token == JsonToken.END_ARRAY) { return list; }
+            }
         } catch (JsonProcessingException e) {
+            // Fall through to databind
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown for a String source
+        }
+        try {
+            return reminderListReader.<List<Reminder.Stub>>readValue(arrayString).stream().map(Reminder.Stub::asFull).toList();
+        } catch (IOException | RuntimeException e) {
             System.err.println("Failed converting json of: " + arrayString + " to list");
             return List.of();
         }
@@ -0,0 +1,19 @@
+package io.mindspice.toastit.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+
+// The original meta file format, pretty printed json through Jackson
+public class JsonCodec implements EntryCodec {
+
+    @Override
+    public byte[] encode(Object entry) throws IOException {
+        return JSON.writePretty(entry).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public <T> T decode(byte[] data, Class<T> clazz) throws IOException {
+        return JSON.read(data, clazz);
+    }
+}
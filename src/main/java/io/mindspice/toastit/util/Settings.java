@@ -5,6 +5,9 @@ import com.github.freva.asciitable.OverflowBehaviour;
 import io.mindspice.toastit.calendar.Calendar;
 import io.mindspice.toastit.calendar.CalendarCell;
 import io.mindspice.toastit.entries.DatedEntry;
+import io.mindspice.toastit.enums.EntryFileFormat;
+import io.mindspice.toastit.enums.FsyncPolicy;
+import io.mindspice.toastit.enums.SearchBackend;
 import io.mindspice.toastit.shell.ShellMode;
 
 import java.nio.file.Path;
@@ -27,6 +30,18 @@ public class Settings {
     public static String PROJECT_PATH;
     public static String TEMP_PATH;
 
+    // Database
+    public static int DATABASE_POOL_SIZE = 4;
+    public static int DATABASE_ACQUIRE_TIMEOUT_MS = 10_000;
+    public static String DATABASE_JOURNAL_MODE;
+    public static String DATABASE_SYNCHRONOUS;
+    public static int DATABASE_MMAP_SIZE_MB;
+    public static int DATABASE_CACHE_SIZE_KB;
+    public static String DATABASE_TEMP_STORE;
+    public static int DATABASE_BUSY_TIMEOUT_MS;
+    public static boolean DATABASE_STORE_BODIES;
+    public static int DATABASE_TASK_CACHE_SIZE = 1000;
+
     // Edit Settings
 
     private static final Map<String, Consumer<Path>> EDITOR_MAP = new HashMap<>();
@@ -61,15 +76,24 @@ public class Settings {
 
     // Application
     public static int EXEC_THREADS;
+    public static int WRITE_BEHIND_DELAY_MS = 500;
+    public static FsyncPolicy FILE_FSYNC_POLICY = FsyncPolicy.FILE;
+    public static EntryFileFormat ENTRY_FILE_FORMAT = EntryFileFormat.JSON;
     public static List<String> DATE_INPUT_PATTERNS;
     public static List<String> TIME_INPUT_PATTERNS;
     public static String DATE_TIME_FULL_PATTERN;
     public static String DATE_TIME_SHORT_PATTERN;
     public static boolean THREADED_SEARCH;
-    public static int SEARCH_TIMEOUT_SEC;
+    public static int SEARCH_TIMEOUT_SEC = 60;
+    public static int SEARCH_MAX_RESULTS = 1000;
+    public static int SEARCH_CONCURRENCY = 8;
+    public static SearchBackend TEXT_SEARCH_BACKEND = SearchBackend.SCAN;
+    public static int SEARCH_INDEX_SYNC_INV_MIN = 5; // Picks up note/journal edits made outside the shell, 0 to disable
 
     // Events
     public static int EVENT_LOOK_FORWARD_DAYS;
+    public static int EVENT_PAST_WINDOW_DAYS = 7; // Past events loaded on refresh, older ones are paged in, -1 for all
+    public static int EVENT_PAST_PAGE_SIZE = 50;
     public static int EVENT_REFRESH_INV_MIN;
     public static int EVENT_NOTIFY_FADE_TIME_SEC;
 
@@ -10,6 +10,7 @@ import io.mindspice.toastit.entries.task.SubTask;
 import io.mindspice.toastit.entries.task.TaskEntry;
 import io.mindspice.toastit.entries.text.TextEntry;
 import io.mindspice.toastit.notification.Reminder;
+import io.mindspice.toastit.sqlite.SearchHit;
 import io.mindspice.toastit.shell.evaluators.EventEval;
 import io.mindspice.toastit.shell.evaluators.TextEval;
 import io.mindspice.toastit.shell.evaluators.ProjectEval;
@@ -40,6 +41,7 @@ public class TableConfig {
     public static List<ColumnData<Pair<Integer, String>>> NOTE_TABLE;
     public static List<ColumnData<Pair<Integer, Reminder>>> REMINDER_TABLE;
     public static List<ColumnData<Pair<Integer, SearchResult>>> SEARCH_VIEW_TABLE;
+    public static List<ColumnData<SearchHit>> GLOBAL_SEARCH_TABLE;
     public static List<ColumnData<Pair<Integer, String>>> TODO_VIEW_TABLE;
 
     //Project
@@ -107,10 +107,11 @@ public class TableUtil {
             List<T> items, Function<T, String> dataFunc) {
 
         List<ColumnData<Pair<String, String>>> columns = TableUtil.createKeyPairColumns("Index", dataColumnHeader);
+        List<T> snapshot = new ArrayList<>(items); // Stays in bounds if a refresh changes the list meanwhile
         return generateTableWithHeader(
                 header,
-                IntStream.range(0, items.size())
-                        .mapToObj(i -> Pair.of(String.valueOf(i), dataFunc.apply(items.get(i))))
+                IntStream.range(0, snapshot.size())
+                        .mapToObj(i -> Pair.of(String.valueOf(i), dataFunc.apply(snapshot.get(i))))
                         .toList(),
                 columns);
     }
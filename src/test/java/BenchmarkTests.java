@@ -0,0 +1,498 @@
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.mindspice.toastit.entries.event.EventEntry;
+import io.mindspice.toastit.entries.task.TaskEntry;
+import io.mindspice.toastit.entries.text.TextEntry;
+import io.mindspice.toastit.entries.text.TextIndex;
+import io.mindspice.toastit.entries.text.TextManager;
+import io.mindspice.toastit.enums.EntryFileFormat;
+import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.enums.NotificationLevel;
+import io.mindspice.toastit.enums.FsyncPolicy;
+import io.mindspice.toastit.enums.SearchBackend;
+import io.mindspice.toastit.notification.NotificationScheduler;
+import io.mindspice.toastit.notification.Reminder;
+import io.mindspice.toastit.notification.ScheduledNotification;
+import io.mindspice.toastit.sqlite.ConnectionPool;
+import io.mindspice.toastit.sqlite.DBConnection;
+import io.mindspice.toastit.sqlite.DBProfile;
+import io.mindspice.toastit.sqlite.PooledConnection;
+import io.mindspice.toastit.sqlite.TableInit;
+import io.mindspice.toastit.util.DurableWriter;
+import io.mindspice.toastit.util.EntryCodec;
+import io.mindspice.toastit.util.EntryFiles;
+import io.mindspice.toastit.util.JSON;
+import io.mindspice.toastit.util.Settings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assume.assumeTrue;
+
+
+// Micro benchmarks, skipped unless ran with: mvn test -Dtest=BenchmarkTests -Dbenchmark=true
+public class BenchmarkTests {
+
+    // Settings are global, snapshot the ones the benchmarks change so later tests in the JVM see the originals
+    private String databasePath;
+    private int databasePoolSize;
+    private int databaseAcquireTimeoutMs;
+    private List<String> dateInputPatterns;
+    private List<String> timeInputPatterns;
+    private String dateTimeFullPattern;
+    private String dateTimeShortPattern;
+    private SearchBackend textSearchBackend;
+    private boolean threadedSearch;
+    private int searchTimeoutSec;
+    private int searchMaxResults;
+
+    @Before
+    public void onlyWhenRequested() {
+        assumeTrue("Benchmarks disabled, run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+        databasePath = Settings.DATABASE_PATH;
+        databasePoolSize = Settings.DATABASE_POOL_SIZE;
+        databaseAcquireTimeoutMs = Settings.DATABASE_ACQUIRE_TIMEOUT_MS;
+        dateInputPatterns = Settings.DATE_INPUT_PATTERNS;
+        timeInputPatterns = Settings.TIME_INPUT_PATTERNS;
+        dateTimeFullPattern = Settings.DATE_TIME_FULL_PATTERN;
+        dateTimeShortPattern = Settings.DATE_TIME_SHORT_PATTERN;
+        textSearchBackend = Settings.TEXT_SEARCH_BACKEND;
+        threadedSearch = Settings.THREADED_SEARCH;
+        searchTimeoutSec = Settings.SEARCH_TIMEOUT_SEC;
+        searchMaxResults = Settings.SEARCH_MAX_RESULTS;
+    }
+
+    @After
+    public void restoreSettings() {
+        if (!Boolean.getBoolean("benchmark")) { return; }
+        Settings.DATABASE_PATH = databasePath;
+        Settings.DATABASE_POOL_SIZE = databasePoolSize;
+        Settings.DATABASE_ACQUIRE_TIMEOUT_MS = databaseAcquireTimeoutMs;
+        Settings.DATE_INPUT_PATTERNS = dateInputPatterns;
+        Settings.TIME_INPUT_PATTERNS = timeInputPatterns;
+        Settings.DATE_TIME_FULL_PATTERN = dateTimeFullPattern;
+        Settings.DATE_TIME_SHORT_PATTERN = dateTimeShortPattern;
+        Settings.TEXT_SEARCH_BACKEND = textSearchBackend;
+        Settings.THREADED_SEARCH = threadedSearch;
+        Settings.SEARCH_TIMEOUT_SEC = searchTimeoutSec;
+        Settings.SEARCH_MAX_RESULTS = searchMaxResults;
+    }
+
+    private static void printLatency(String name, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0) / 1000;
+        System.out.printf("%-32s n=%-7d mean=%8.1fus  p50=%8.1fus  p99=%8.1fus  max=%8.1fus%n",
+                name, sorted.length, mean,
+                sorted[sorted.length / 2] / 1000.0,
+                sorted[(int) (sorted.length * 0.99)] / 1000.0,
+                sorted[sorted.length - 1] / 1000.0
+        );
+    }
+
+    private static ConnectionPool tempDatabase(DBProfile profile) throws Exception {
+        Path dir = Files.createTempDirectory("toastit-bench");
+        dir.toFile().deleteOnExit();
+        var pool = new ConnectionPool("jdbc:sqlite:" + dir.resolve("bench.db"), profile, 2, 10_000);
+        try (PooledConnection conn = pool.acquire(); Statement stmt = conn.connection().createStatement()) {
+            for (String init : TableInit.INIT_STATEMENTS) {
+                stmt.execute(init);
+            }
+        }
+        return pool;
+    }
+
+    private static final String EVENT_UPSERT = """
+            INSERT INTO events (uuid, name, tags, start_time, end_time, reminders, linked_uuid, completed)
+               VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT(uuid) DO UPDATE SET
+               name = excluded.name,
+               start_time = excluded.start_time,
+               end_time = excluded.end_time
+            """;
+
+    private static void bindEvent(PreparedStatement ps, String uuid, long time) throws SQLException {
+        ps.setString(1, uuid);
+        ps.setString(2, "Benchmark event " + time);
+        ps.setString(3, "[\"bench\"]");
+        ps.setLong(4, time);
+        ps.setLong(5, time + 3600);
+        ps.setString(6, "[{\"time\":" + (time - 600) + ",\"level\":\"NORMAL\"}]");
+        ps.setString(7, "00000000-0000-0000-0000-000000000000");
+        ps.setBoolean(8, false);
+    }
+
+    private static void seedEvents(ConnectionPool pool, int rows) throws SQLException {
+        try (PooledConnection conn = pool.acquire()) {
+            conn.connection().setAutoCommit(false);
+            PreparedStatement ps = conn.prepare(EVENT_UPSERT);
+            long base = 1_700_000_000L;
+            for (int i = 0; i < rows; ++i) {
+                bindEvent(ps, UUID.randomUUID().toString(), base + i * 60L);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.connection().commit();
+            conn.connection().setAutoCommit(true);
+        }
+    }
+
+    @Test
+    public void databaseWriteLatencyByProfile() throws Exception {
+        int seedRows = 100_000;
+        int writes = 2_000;
+        List<DBProfile> profiles = List.of(
+                DBProfile.defaults(),
+                new DBProfile("WAL", "NORMAL", 64L * 1024 * 1024, 8192, "MEMORY", 5000)
+        );
+
+        for (DBProfile profile : profiles) {
+            ConnectionPool pool = tempDatabase(profile);
+            seedEvents(pool, seedRows);
+
+            long[] latencies = new long[writes];
+            try (PooledConnection conn = pool.acquire()) {
+                PreparedStatement ps = conn.prepare(EVENT_UPSERT);
+                for (int i = 0; i < writes; ++i) {
+                    bindEvent(ps, UUID.randomUUID().toString(), 1_800_000_000L + i);
+                    long start = System.nanoTime();
+                    ps.executeUpdate(); // autocommit, one transaction per write like upsertEvent
+                    latencies[i] = System.nanoTime() - start;
+                }
+            }
+            printLatency(String.format("upsert %s/%s", profile.journalMode(), profile.synchronous()), latencies);
+            pool.close();
+        }
+    }
+
+    @Test
+    public void reminderSchedulingWith100kPending() {
+        int pending = 100_000;
+        int operations = 10_000;
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now();
+        long[] offsetsMin = random.longs(pending, 60, 60L * 24 * 90).toArray(); // 1 hour to 90 days out
+        Runnable noop = () -> { };
+
+        // Baseline, one ScheduledFuture per reminder on the shared pool like the managers used to
+        var exec = new ScheduledThreadPoolExecutor(1);
+        List<ScheduledFuture<?>> futures = new ArrayList<>(pending);
+        long[] scheduleNanos = new long[pending];
+        for (int i = 0; i < pending; ++i) {
+            long start = System.nanoTime();
+            futures.add(exec.schedule(noop, offsetsMin[i], TimeUnit.MINUTES));
+            scheduleNanos[i] = System.nanoTime() - start;
+        }
+        long[] cancelNanos = new long[operations];
+        for (int i = 0; i < operations; ++i) {
+            long start = System.nanoTime();
+            futures.get(i).cancel(false);
+            exec.schedule(noop, offsetsMin[i] + 5, TimeUnit.MINUTES); // reschedule
+            cancelNanos[i] = System.nanoTime() - start;
+        }
+        printLatency("executor schedule", scheduleNanos);
+        printLatency("executor reschedule", cancelNanos);
+        System.out.printf("executor queue after reschedules: %d%n", exec.getQueue().size());
+        exec.shutdownNow();
+
+        var scheduler = new NotificationScheduler(Runnable::run);
+        List<ScheduledNotification> handles = new ArrayList<>(pending);
+        for (int i = 0; i < pending; ++i) {
+            long start = System.nanoTime();
+            handles.add(scheduler.schedule(UUID.randomUUID(), now.plusMinutes(offsetsMin[i]), noop));
+            scheduleNanos[i] = System.nanoTime() - start;
+        }
+        for (int i = 0; i < operations; ++i) {
+            long start = System.nanoTime();
+            scheduler.reschedule(handles.get(i), now.plusMinutes(offsetsMin[i] + 5));
+            cancelNanos[i] = System.nanoTime() - start;
+        }
+        long[] cancelAllNanos = new long[operations];
+        for (int i = 0; i < operations; ++i) {
+            long start = System.nanoTime();
+            scheduler.cancelAll(handles.get(operations + i).uuid());
+            cancelAllNanos[i] = System.nanoTime() - start;
+        }
+        printLatency("scheduler schedule", scheduleNanos);
+        printLatency("scheduler reschedule", cancelNanos);
+        printLatency("scheduler cancel by uuid", cancelAllNanos);
+        System.out.printf("scheduler pending: %d queue: %d%n", scheduler.size(), scheduler.queueSize());
+        scheduler.shutdown();
+    }
+
+    // Random word files, each line draws from a 5k word vocabulary so common and rare terms both occur
+    private static List<TextEntry> seedTextFiles(int files, int linesPerFile) throws Exception {
+        Path dir = Files.createTempDirectory("toastit-bench-text");
+        dir.toFile().deleteOnExit();
+        Random random = new Random(42);
+        String[] vocabulary = IntStream.range(0, 5_000).mapToObj(i -> "word" + i).toArray(String[]::new);
+        LocalDateTime created = LocalDateTime.now();
+        List<TextEntry> entries = new ArrayList<>(files);
+        for (int f = 0; f < files; ++f) {
+            var entry = new TextEntry(EntryType.NOTE, "Note " + f, created.minusMinutes(f), List.of(),
+                    UUID.randomUUID(), dir);
+            StringBuilder body = new StringBuilder();
+            for (int l = 0; l < linesPerFile; ++l) {
+                for (int w = 0; w < 10; ++w) {
+                    body.append(vocabulary[(int) Math.abs(random.nextGaussian() * 1_000) % vocabulary.length]).append(' ');
+                }
+                body.append('\n');
+            }
+            Files.writeString(entry.getFilePath(), body);
+            entry.getFilePath().toFile().deleteOnExit();
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    @Test
+    public void textSearchIndexVsScanOn50kFiles() throws Exception {
+        List<TextEntry> entries = seedTextFiles(50_000, 20);
+        List<String> queries = List.of("word1", "word999", "word4999", "word12*", "word3 word7");
+        int rounds = 5;
+
+        var manager = new TextManager();
+        manager.entries.putAll(entries);
+        Settings.TEXT_SEARCH_BACKEND = SearchBackend.SCAN;
+        Settings.THREADED_SEARCH = true;
+        Settings.SEARCH_TIMEOUT_SEC = 60;
+
+        long start = System.nanoTime();
+        var index = new TextIndex();
+        index.build(entries);
+        System.out.printf("index build: %d files, %d terms in %dms%n",
+                index.size(), index.termCount(), (System.nanoTime() - start) / 1_000_000);
+
+        for (String query : queries) {
+            // The scan matches substrings, compare on the plain single word queries only
+            boolean comparable = !query.contains("*") && !query.contains(" ");
+            long[] scanNanos = new long[rounds];
+            long[] indexNanos = new long[rounds];
+            int scanHits = 0;
+            int indexHits = 0;
+            for (int r = 0; r < rounds; ++r) {
+                if (comparable) {
+                    start = System.nanoTime();
+                    scanHits = manager.searchEntries(query + " ").size(); // Trailing space, so word1 does not match word12
+                    scanNanos[r] = System.nanoTime() - start;
+                }
+                start = System.nanoTime();
+                indexHits = index.search(query).size();
+                indexNanos[r] = System.nanoTime() - start;
+            }
+            if (comparable) {
+                printLatency("scan " + query + " (" + scanHits + ")", scanNanos);
+            }
+            printLatency("index " + query + " (" + indexHits + ")", indexNanos);
+        }
+
+        long[] updateNanos = new long[1_000];
+        for (int i = 0; i < updateNanos.length; ++i) {
+            TextEntry entry = entries.get(i);
+            Files.writeString(entry.getFilePath(), "updated word" + i + "\n", StandardOpenOption.APPEND);
+            start = System.nanoTime();
+            index.update(entry);
+            updateNanos[i] = System.nanoTime() - start;
+        }
+        printLatency("index update", updateNanos);
+    }
+
+    @Test
+    public void globalSearchOn100kEntries() throws Exception {
+        Path dir = Files.createTempDirectory("toastit-bench-global");
+        dir.toFile().deleteOnExit();
+        Settings.DATABASE_PATH = dir.resolve("bench.db").toString();
+        Settings.DATABASE_POOL_SIZE = 2;
+        Settings.DATABASE_ACQUIRE_TIMEOUT_MS = 10_000;
+        Settings.SEARCH_MAX_RESULTS = 1000;
+        var db = new DBConnection();
+
+        // Random letter words, unlike the wordN vocabulary above they don't all share a prefix, so prefix matches
+        // expand to a realistic number of terms
+        Random random = new Random(42);
+        String[] vocabulary = IntStream.range(0, 5_000)
+                .mapToObj(i -> random.ints(3 + random.nextInt(7), 'a', 'z' + 1)
+                        .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString())
+                .toArray(String[]::new);
+        LocalDateTime now = LocalDateTime.now();
+        long start = System.nanoTime();
+        for (int batch = 0; batch < 10; ++batch) {
+            List<TaskEntry> tasks = new ArrayList<>();
+            List<EventEntry> events = new ArrayList<>();
+            for (int i = 0; i < 5_000; ++i) {
+                String text = IntStream.range(0, 12)
+                        .mapToObj(w -> vocabulary[(int) Math.abs(random.nextGaussian() * 1_000) % vocabulary.length])
+                        .collect(Collectors.joining(" "));
+                tasks.add(new TaskEntry("Task " + batch + "-" + i, false, false, List.of(), text, List.of(text),
+                        List.of(), now, now, now, List.of(), UUID.randomUUID(), dir));
+                events.add(new EventEntry(UUID.randomUUID(), "Event " + text.substring(0, text.indexOf(' ', 20)),
+                        List.of(), now, now.plusHours(1), List.of(), null, false));
+            }
+            db.upsertTasks(tasks);
+            db.upsertEvents(events);
+        }
+        System.out.printf("seeded and indexed 100k entries in %dms%n", (System.nanoTime() - start) / 1_000_000);
+
+        // Most common word, mid and rare words, a prefix of a common word, two words, a name match
+        String common = vocabulary[0];
+        List<String> queries = List.of(common, vocabulary[999], vocabulary[4999], common.substring(0, 2),
+                vocabulary[3] + " " + vocabulary[7], "event " + vocabulary[5]);
+        for (String query : queries) {
+            long[] nanos = new long[20];
+            int hits = 0;
+            for (int r = 0; r < nanos.length; ++r) {
+                start = System.nanoTime();
+                hits = db.searchAll(DBConnection.toMatchQuery(query), Settings.SEARCH_MAX_RESULTS).size();
+                nanos[r] = System.nanoTime() - start;
+            }
+            printLatency("global " + query + " (" + hits + ")", nanos);
+        }
+        db.close();
+    }
+
+    @Test
+    public void entryFileWritesByFsyncPolicy() throws Exception {
+        Path dir = Files.createTempDirectory("toastit-bench-write");
+        dir.toFile().deleteOnExit();
+        int writes = 1_000;
+        LocalDateTime now = LocalDateTime.now();
+        List<String> notes = IntStream.range(0, 10).mapToObj(i -> "Note line " + i + " for a typical task").toList();
+        String json = JSON.writePretty(new TaskEntry("Benchmark task", true, false, List.of(), "A description",
+                notes, List.of("tag1", "tag2"), now, now, now, List.of(), UUID.randomUUID(), dir));
+        byte[] content = json.getBytes();
+        Path target = dir.resolve("bench.task");
+
+        long[] latencies = new long[writes];
+        long total = System.nanoTime();
+        for (int i = 0; i < writes; ++i) {
+            long start = System.nanoTime();
+            Files.write(target, content); // In place, what entries did before DurableWriter
+            latencies[i] = System.nanoTime() - start;
+        }
+        printWrites("in place", latencies, System.nanoTime() - total);
+
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            total = System.nanoTime();
+            for (int i = 0; i < writes; ++i) {
+                long start = System.nanoTime();
+                DurableWriter.write(target, content, policy);
+                latencies[i] = System.nanoTime() - start;
+            }
+            printWrites("atomic " + policy, latencies, System.nanoTime() - total);
+        }
+    }
+
+    @Test
+    public void entryCodecJsonVsBinary() throws Exception {
+        int entries = 10_000;
+        LocalDateTime now = LocalDateTime.now();
+        Path dir = Files.createTempDirectory("toastit-bench-codec");
+        dir.toFile().deleteOnExit();
+        List<String> notes = IntStream.range(0, 5).mapToObj(i -> "Note line " + i + " for a typical task").toList();
+        List<TaskEntry> tasks = IntStream.range(0, entries)
+                .mapToObj(i -> new TaskEntry("Task " + i, true, false, List.of(), "A description", notes,
+                        List.of("tag1", "tag2"), now, now, now, List.of(), UUID.randomUUID(), dir))
+                .toList();
+
+        for (EntryFileFormat format : EntryFileFormat.values()) {
+            EntryCodec codec = EntryFiles.codec(format);
+            long[] encodeNanos = new long[entries];
+            long[] decodeNanos = new long[entries];
+            long size = 0;
+            for (int i = 0; i < entries; ++i) {
+                long start = System.nanoTime();
+                byte[] data = codec.encode(tasks.get(i));
+                encodeNanos[i] = System.nanoTime() - start;
+                size += data.length;
+                start = System.nanoTime();
+                EntryFiles.decode(data, TaskEntry.class);
+                decodeNanos[i] = System.nanoTime() - start;
+            }
+            printLatency("encode " + format + " (" + size / entries + "B)", encodeNanos);
+            printLatency("decode " + format, decodeNanos);
+        }
+    }
+
+    @Test
+    public void eventRowMapping10k() throws Exception {
+        int events = 10_000;
+        int rounds = 20;
+        Path dir = Files.createTempDirectory("toastit-bench-rows");
+        dir.toFile().deleteOnExit();
+        Settings.DATABASE_PATH = dir.resolve("bench.db").toString();
+        Settings.DATABASE_POOL_SIZE = 2;
+        Settings.DATABASE_ACQUIRE_TIMEOUT_MS = 10_000;
+        Settings.DATE_INPUT_PATTERNS = List.of("MM/dd/yy"); // DateTimeUtil loads its formatters from these
+        Settings.TIME_INPUT_PATTERNS = List.of("HH:mm");
+        Settings.DATE_TIME_FULL_PATTERN = "EEEE, MMM dd, yyyy '@' HH:mm";
+        Settings.DATE_TIME_SHORT_PATTERN = "EEEE, MMM dd '@' HH:mm";
+        var db = new DBConnection();
+
+        LocalDateTime now = LocalDateTime.now();
+        List<EventEntry> seed = IntStream.range(0, events)
+                .mapToObj(i -> new EventEntry(UUID.randomUUID(), "Event " + i, List.of("tag1", "tag" + i % 20),
+                        now.plusMinutes(i), now.plusMinutes(i + 60),
+                        List.of(new Reminder(now.plusMinutes(i - 10), NotificationLevel.NORMAL),
+                                new Reminder(now.plusMinutes(i - 60), NotificationLevel.LOW)),
+                        null, false))
+                .toList();
+        db.upsertEvents(seed);
+        String tags = JSON.writeString(seed.getFirst().tags());
+        String reminders = JSON.writeString(seed.getFirst().reminders().stream().map(Reminder::getStub).toList());
+
+        // Column parsing alone, the per row databind calls that were used before against the token fast path
+        var mapper = new ObjectMapper();
+        var stringList = new TypeReference<List<String>>() { };
+        var stubList = new TypeReference<List<Reminder.Stub>>() { };
+        long[] databindNanos = new long[rounds];
+        long[] streamingNanos = new long[rounds];
+        for (int r = 0; r < rounds; ++r) {
+            long start = System.nanoTime();
+            for (int i = 0; i < events; ++i) {
+                mapper.readValue(tags, stringList);
+                mapper.readValue(reminders, stubList).forEach(Reminder.Stub::asFull);
+            }
+            databindNanos[r] = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < events; ++i) {
+                JSON.jsonArrayToStringList(tags);
+                JSON.jsonArrayToReminderList(reminders);
+            }
+            streamingNanos[r] = System.nanoTime() - start;
+        }
+        printLatency("10k columns databind", databindNanos);
+        printLatency("10k columns streaming", streamingNanos);
+
+        long[] mapNanos = new long[rounds];
+        for (int r = 0; r < rounds; ++r) {
+            long start = System.nanoTime();
+            int mapped = db.getEvents(-1).size();
+            mapNanos[r] = System.nanoTime() - start;
+            if (mapped != events) { throw new IllegalStateException("Mapped " + mapped + " events"); }
+        }
+        printLatency("10k event rows mapped", mapNanos);
+    }
+
+    private static void printWrites(String name, long[] nanos, long totalNanos) {
+        printLatency(name, nanos);
+        System.out.printf("%-32s %.0f writes/s%n", "", nanos.length / (totalNanos / 1e9));
+    }
+}
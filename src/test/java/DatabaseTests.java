@@ -1,6 +1,11 @@
 import io.mindspice.toastit.App;
 import io.mindspice.toastit.notification.Reminder;
 import io.mindspice.toastit.sqlite.DBConnection;
+import io.mindspice.toastit.sqlite.EntryChange;
+import io.mindspice.toastit.sqlite.Migration;
+import io.mindspice.toastit.sqlite.SchemaMigrator;
+import io.mindspice.toastit.sqlite.SearchHit;
+import io.mindspice.toastit.sqlite.TableInit;
 import io.mindspice.toastit.entries.event.EventEntry;
 import io.mindspice.toastit.entries.project.ProjectEntry;
 import io.mindspice.toastit.entries.task.SubTask;
@@ -10,15 +15,32 @@ import io.mindspice.toastit.enums.EntryType;
 import io.mindspice.toastit.enums.NotificationLevel;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import io.mindspice.toastit.util.BinaryCodec;
+import io.mindspice.toastit.util.DateTimeUtil;
+import io.mindspice.toastit.util.JSON;
+import io.mindspice.toastit.util.Settings;
 import io.mindspice.toastit.util.Util;
 
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 
 public class DatabaseTests {
@@ -214,6 +236,66 @@ public class DatabaseTests {
 
     }
 
+    @Test
+    public void projectTasksLoadOnFirstUse() throws IOException {
+        Path taskPath = Util.getEntriesPath(EntryType.TASK);
+        Function<String, TaskEntry> newTask = name -> new TaskEntry(name, true, false, List.of(), "", List.of(),
+                List.of(), LocalDateTime.now(), LocalDateTime.now(), LocalDateTime.now(), List.of(), UUID.randomUUID(),
+                taskPath);
+        TaskEntry first = newTask.apply("First");
+        TaskEntry second = newTask.apply("Second");
+        first.flushToDisk();
+        second.flushToDisk();
+        db.upsertTasks(List.of(first, second));
+
+        // Order follows the uuids, unknown uuids are skipped
+        List<UUID> uuids = List.of(second.uuid(), UUID.randomUUID(), first.uuid());
+        assertEquals(List.of(second, first), db.getTasks(uuids));
+
+        // Cached tasks follow upserts and deletes
+        var builder = first.updateBuilder();
+        builder.name = "First renamed";
+        TaskEntry renamed = builder.build();
+        renamed.flushToDisk();
+        db.upsertTask(renamed);
+        assertEquals(List.of(second, renamed), db.getTasks(uuids));
+
+        var project = ProjectEntry.builder();
+        project.name = "Lazy project";
+        project.tasks = List.of(first.uuid(), second.uuid());
+        ProjectEntry built = project.build();
+        assertEquals(List.of(renamed, second), built.taskObjs());
+
+        // Any write after the cache was read drops the cached copy, here the meta file changes and the row is
+        // only archived, which never passes through the cache
+        builder = renamed.updateBuilder();
+        builder.name = "First archived";
+        builder.build().flushToDisk();
+        db.archiveTask(first.uuid(), true);
+        assertEquals("First archived", db.getTasks(uuids).getLast().name());
+        // Nothing is kept on the project, its next use reads the new copy
+        assertEquals("First archived", built.taskObjs().getFirst().name());
+
+        // A task save still queued behind the write-behind flush is written before the project reads its tasks
+        builder = second.updateBuilder();
+        builder.name = "Second queued";
+        app.getTaskManager().writes.put(builder.build());
+        assertEquals("Second queued", built.taskObjs().getLast().name());
+
+        // Evicted past the size cap, a large project still gets every task
+        int cacheSize = Settings.DATABASE_TASK_CACHE_SIZE;
+        Settings.DATABASE_TASK_CACHE_SIZE = 1;
+        try {
+            assertEquals(List.of(second.uuid(), first.uuid()), db.getTasks(uuids).stream().map(TaskEntry::uuid).toList());
+        } finally {
+            Settings.DATABASE_TASK_CACHE_SIZE = cacheSize;
+        }
+
+        db.deleteTaskByUUID(first.uuid());
+        db.deleteTaskByUUID(second.uuid());
+        assertTrue(db.getTasks(uuids).isEmpty());
+    }
+
     @Test
     public void journalTest() throws IOException {
 
@@ -265,4 +347,408 @@ public class DatabaseTests {
         assertEquals(note, readNote);
 
     }
+
+    @Test
+    public void queryPlansAvoidTableScans() throws IOException {
+        // "SCAN tasks USING INDEX ..." walks a (partial) index, a bare "SCAN tasks" reads the whole table
+        for (String query : DBConnection.INDEXED_QUERIES) {
+            List<String> plan = db.explainQueryPlan(query);
+            assertTrue(query + " -> " + plan, plan.stream().noneMatch(step -> step.matches("SCAN \\w+")));
+        }
+    }
+
+    @Test
+    public void schemaIsAtLatestMigration() throws IOException {
+        assertEquals(TableInit.MIGRATIONS.getLast().version(), db.getSchemaVersion());
+    }
+
+    @Test
+    public void failedMigrationRollsBack() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            var migrator = new SchemaMigrator(List.of(
+                    Migration.of(1, "Create table", "CREATE TABLE test (id INTEGER PRIMARY KEY)"),
+                    Migration.of(2, "Broken", "CREATE TABLE test2 (id INTEGER)", "INSERT INTO missing VALUES (1)")
+            ));
+            assertThrows(SQLException.class, () -> migrator.migrate(conn));
+            assertEquals(0, SchemaMigrator.currentVersion(conn));
+
+            var fixed = new SchemaMigrator(List.of(
+                    Migration.of(1, "Create table", "CREATE TABLE test (id INTEGER PRIMARY KEY)"),
+                    new Migration(2, "Rebuild", Migration.rebuildTable(
+                            "test", "CREATE TABLE %s (id INTEGER PRIMARY KEY, name TEXT)", "id, NULL"))
+            ));
+            assertEquals(2, fixed.migrate(conn).size());
+            assertEquals(2, SchemaMigrator.currentVersion(conn));
+            assertTrue(fixed.migrate(conn).isEmpty());
+        }
+    }
+
+    @Test
+    public void searchDocsTakeArchivedFromTheirRow() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement stmt = conn.createStatement()) {
+            new SchemaMigrator(TableInit.MIGRATIONS.subList(0, 9)).migrate(conn);
+            stmt.execute("INSERT INTO events (uuid, name, archived) VALUES ('old', 'Archived before v6', 1)");
+            stmt.execute("INSERT INTO search_docs (uuid, entry_type, modified) VALUES ('old', 'EVENT', 0)");
+
+            new SchemaMigrator(TableInit.MIGRATIONS).migrate(conn);
+            try (ResultSet result = stmt.executeQuery("SELECT archived FROM search_docs WHERE uuid = 'old'")) {
+                assertTrue(result.getBoolean(1));
+            }
+
+            // Documents written after the row was archived start out archived
+            stmt.execute("INSERT INTO tasks (uuid, name, archived) VALUES ('task', 'Archived task', 1)");
+            stmt.execute("INSERT INTO search_docs (uuid, entry_type, modified) VALUES ('task', 'TASK', 0)");
+            stmt.execute("INSERT INTO search_docs (uuid, entry_type, modified) VALUES ('gone', 'NOTE', 0)");
+            try (ResultSet result = stmt.executeQuery("SELECT uuid FROM search_docs WHERE archived ORDER BY uuid")) {
+                List<String> archived = new ArrayList<>();
+                while (result.next()) {
+                    archived.add(result.getString(1));
+                }
+                assertEquals(List.of("old", "task"), archived);
+            }
+        }
+    }
+
+    @Test
+    public void oldEventRowsMoveToBinaryColumns() throws SQLException, IOException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement stmt = conn.createStatement()) {
+            new SchemaMigrator(TableInit.MIGRATIONS.subList(0, 7)).migrate(conn);
+            UUID uuid = UUID.randomUUID();
+            UUID linked = UUID.randomUUID();
+            var reminder = new Reminder(LocalDateTime.of(2024, 3, 1, 9, 30), NotificationLevel.LOW);
+            stmt.execute(String.format(
+                    "INSERT INTO events (uuid, name, reminders, linked_uuid) VALUES ('%s', 'Old event', '%s', '%s')",
+                    uuid, JSON.writeString(List.of(reminder.getStub())), linked));
+
+            new SchemaMigrator(TableInit.MIGRATIONS).migrate(conn);
+            try (ResultSet result = stmt.executeQuery("SELECT * FROM events")) {
+                assertEquals(uuid, BinaryCodec.uuidOf(result.getBytes("uuid_bin")));
+                assertEquals(linked, BinaryCodec.uuidOf(result.getBytes("linked_bin")));
+                assertEquals(List.of(reminder), BinaryCodec.decodeReminders(result.getBytes("reminders_bin")));
+                assertNull(result.getString("reminders"));
+                assertNull(result.getString("linked_uuid"));
+                assertEquals(uuid.toString(), result.getString("uuid")); // Still the key other tables join on
+            }
+        }
+    }
+
+    @Test
+    public void batchUpsertTasks() throws IOException {
+        Path path = Util.getEntriesPath(EntryType.TASK);
+
+        List<TaskEntry> tasks = IntStream.range(0, 1200).mapToObj(i -> new TaskEntry(
+                "Batch Task " + i,
+                i % 2 == 0,
+                false,
+                List.of(),
+                "Batch description",
+                List.of(),
+                tags,
+                LocalDateTime.now().plusDays(i),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusDays(i + 1),
+                List.of(),
+                UUID.randomUUID(),
+                path
+        )).toList();
+
+        db.upsertTasks(tasks);
+        for (TaskEntry task : tasks) {
+            assertEquals(task.getStub(), db.getTaskStubByUUID(task.uuid()));
+        }
+        for (TaskEntry task : tasks) {
+            db.deleteTaskByUUID(task.uuid());
+        }
+    }
+
+    @Test
+    public void storedBodyHydratesWithoutMetaFile() throws IOException {
+        Path path = Util.getEntriesPath(EntryType.TASK);
+        var task = new TaskEntry(
+                "Body Task",
+                true,
+                false,
+                List.of(subTask1),
+                "Stored in the body column",
+                List.of("No meta file written"),
+                tags,
+                LocalDateTime.now().plusMonths(1),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusDays(20),
+                List.of(new Reminder(LocalDateTime.now().plusDays(1), NotificationLevel.LOW)),
+                UUID.randomUUID(),
+                path
+        );
+
+        boolean storeBodies = Settings.DATABASE_STORE_BODIES;
+        Settings.DATABASE_STORE_BODIES = true;
+        try {
+            db.upsertTask(task);
+            assertEquals(task, db.getTaskByUUID(task.uuid()));
+            assertTrue(db.getActiveTaskEntries().contains(task));
+        } finally {
+            Settings.DATABASE_STORE_BODIES = storeBodies;
+            db.deleteTaskByUUID(task.uuid());
+        }
+    }
+
+    @Test
+    public void changesSinceRevision() throws IOException {
+        Path path = Util.getEntriesPath(EntryType.TASK);
+        var task = new TaskEntry(
+                "Revision Task",
+                true,
+                false,
+                List.of(),
+                "Tracked by revision",
+                List.of(),
+                tags,
+                LocalDateTime.now().plusMonths(1),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusDays(20),
+                List.of(),
+                UUID.randomUUID(),
+                path
+        );
+        task.flushToDisk();
+
+        long start = db.getRevision();
+        db.upsertTask(task);
+        List<EntryChange<TaskEntry>> changes = db.getActiveTaskChanges(start);
+        assertEquals(1, changes.size());
+        assertEquals(task, changes.getFirst().entry());
+
+        long afterInsert = changes.getLast().revision();
+        assertTrue(db.getActiveTaskChanges(afterInsert).isEmpty());
+
+        db.archiveTask(task.uuid(), true);
+        changes = db.getActiveTaskChanges(afterInsert);
+        assertEquals(1, changes.size());
+        assertTrue(changes.getFirst().isRemoval());
+
+        db.deleteTaskByUUID(task.uuid());
+        changes = db.getActiveTaskChanges(changes.getLast().revision());
+        assertEquals(task.uuid(), changes.getFirst().uuid());
+        assertTrue(changes.getFirst().isRemoval());
+    }
+
+    @Test
+    public void unreadableActiveRowFailsChanges() throws IOException {
+        var task = new TaskEntry("Unreadable Task", true, false, List.of(), "", List.of(), tags,
+                LocalDateTime.now().plusMonths(1), LocalDateTime.now(), LocalDateTime.now(), List.of(),
+                UUID.randomUUID(), Util.getEntriesPath(EntryType.TASK));
+        long start = db.getRevision();
+        db.upsertTask(task); // No meta file written, the row can't be hydrated
+
+        // Must not come back as a removal the refresh would apply and skip past
+        assertThrows(IOException.class, () -> db.getActiveTaskChanges(start));
+        task.flushToDisk();
+        assertEquals(task, db.getActiveTaskChanges(start).getFirst().entry());
+        db.deleteTaskByUUID(task.uuid());
+    }
+
+    @Test
+    public void fullTextSearchIndex() throws IOException {
+        Path path = Util.getEntriesPath(EntryType.NOTE);
+        TextEntry inName = new TextEntry(EntryType.NOTE, "Sourdough starter", LocalDateTime.now(), tags,
+                UUID.randomUUID(), path);
+        TextEntry inBody = new TextEntry(EntryType.NOTE, "Weekend", LocalDateTime.now(), tags,
+                UUID.randomUUID(), path);
+        inName.flushToDisk();
+        inBody.flushToDisk();
+        Files.writeString(inBody.getFilePath(), "Fed the sourdough starter\nthen went hiking");
+
+        db.updateSearchIndex(List.of(inName, inBody));
+        List<SearchHit> hits = db.searchText(EntryType.NOTE, DBConnection.toMatchQuery("sourdough star"), 10);
+        assertEquals(List.of(inName.uuid(), inBody.uuid()), hits.stream().map(SearchHit::uuid).toList());
+        assertTrue(hits.get(1).snippet(), hits.get(1).snippet().contains("[sourdough]"));
+        assertTrue(db.searchText(EntryType.JOURNAL, DBConnection.toMatchQuery("sourdough"), 10).isEmpty());
+
+        // Reindexing replaces the document, removal drops it
+        Files.writeString(inBody.getFilePath(), "Only hiking now");
+        db.updateSearchIndex(List.of(inBody));
+        assertEquals(1, db.searchText(EntryType.NOTE, DBConnection.toMatchQuery("sourdough"), 10).size());
+        db.removeFromSearchIndex(List.of(inName.uuid(), inBody.uuid()));
+        assertTrue(db.searchText(EntryType.NOTE, DBConnection.toMatchQuery("sourdough"), 10).isEmpty());
+        assertFalse(db.getSearchIndexState(EntryType.NOTE).containsKey(inBody.uuid()));
+
+        // Query syntax in user input is matched as text
+        assertTrue(db.searchText(EntryType.NOTE, DBConnection.toMatchQuery("\"AND (NEAR -"), 10).isEmpty());
+        assertNull(DBConnection.toMatchQuery("   "));
+    }
+
+    @Test
+    public void filterTextEntriesByTagAndDate() throws IOException {
+        Path path = Util.getEntriesPath(EntryType.NOTE);
+        LocalDateTime day = LocalDateTime.of(2024, 3, 10, 12, 0);
+        TextEntry older = new TextEntry(EntryType.NOTE, "Older", day.minusDays(5), List.of("garden"),
+                UUID.randomUUID(), path);
+        TextEntry newer = new TextEntry(EntryType.NOTE, "Newer", day, List.of("Garden", "seeds"),
+                UUID.randomUUID(), path);
+        TextEntry archived = new TextEntry(EntryType.NOTE, "Archived", day, List.of("garden"),
+                UUID.randomUUID(), path);
+        db.upsertNotes(List.of(older, newer, archived));
+        db.archiveNote(archived.uuid(), true);
+
+        Set<UUID> garden = db.filterTextEntries(EntryType.NOTE, List.of("garden"), null, null);
+        assertTrue(garden.containsAll(Set.of(older.uuid(), newer.uuid())));
+        assertFalse(garden.contains(archived.uuid()));
+
+        assertEquals(Set.of(newer.uuid()), db.filterTextEntries(EntryType.NOTE, List.of("garden", "seeds"), null, null));
+        assertEquals(Set.of(newer.uuid()), db.filterTextEntries(EntryType.NOTE, List.of("garden"),
+                day.toLocalDate().atStartOfDay(), day.plusDays(1)));
+        assertEquals(Set.of(older.uuid()), db.filterTextEntries(EntryType.NOTE, List.of("garden"),
+                null, day.toLocalDate().atStartOfDay()));
+        assertTrue(db.filterTextEntries(EntryType.JOURNAL, List.of("garden"), null, null).isEmpty());
+    }
+
+    @Test
+    public void globalSearchCoversEveryEntryType() throws IOException {
+        var subTask = new SubTask("Hangar check", "Inspect the zeppelin envelope", false, LocalDateTime.now());
+        var task = new TaskEntry("Maintenance", false, false, List.of(subTask), "Routine", List.of(), tags,
+                LocalDateTime.now().plusDays(1), LocalDateTime.now(), LocalDateTime.now(), List.of(),
+                UUID.randomUUID(), Util.getEntriesPath(EntryType.TASK));
+        var project = new ProjectEntry("Airship", false, false, List.of(), List.of(), "Build it",
+                List.of("Rent a zeppelin hangar"), tags, Path.of("/tmp"), LocalDateTime.now().plusDays(1),
+                LocalDateTime.now(), LocalDateTime.now(), List.of(), UUID.randomUUID(),
+                Util.getEntriesPath(EntryType.PROJECT), "");
+        var event = new EventEntry(UUID.randomUUID(), "Zeppelin launch", tags, LocalDateTime.now(),
+                LocalDateTime.now().plusHours(1), List.of(), null, false);
+        var note = new TextEntry(EntryType.NOTE, "Trip", LocalDateTime.now(), tags, UUID.randomUUID(),
+                Util.getEntriesPath(EntryType.NOTE));
+        note.flushToDisk();
+        Files.writeString(note.getFilePath(), "Saw a zeppelin today");
+
+        db.upsertTask(task);
+        db.upsertProjects(List.of(project));
+        db.upsertEvent(event);
+        db.upsertNote(note);
+        db.updateSearchIndex(List.of(note));
+
+        List<SearchHit> hits = db.searchAll(DBConnection.toMatchQuery("zeppelin"), 10);
+        assertEquals(Set.of(EntryType.TASK, EntryType.PROJECT, EntryType.EVENT, EntryType.NOTE),
+                Set.copyOf(hits.stream().map(SearchHit::type).toList()));
+        assertEquals(EntryType.EVENT, hits.getFirst().type()); // Name matches rank first
+        assertEquals("Zeppelin launch", hits.getFirst().name());
+
+        // Archive and delete reach the index through the table triggers
+        db.archiveEvent(event.uuid(), true);
+        db.deleteTaskByUUID(task.uuid());
+        assertEquals(Set.of(project.uuid(), note.uuid()), Set.copyOf(
+                db.searchAll(DBConnection.toMatchQuery("zeppelin"), 10).stream().map(SearchHit::uuid).toList()));
+        db.archiveEvent(event.uuid(), false);
+        assertEquals(3, db.searchAll(DBConnection.toMatchQuery("zeppelin"), 10).size());
+
+        db.deleteEventByUUID(event.uuid());
+        db.deleteProjectByUUID(project.uuid());
+        db.deleteNoteByUUID(note.uuid());
+        assertTrue(db.searchAll(DBConnection.toMatchQuery("zeppelin"), 10).isEmpty());
+    }
+
+    @Test
+    public void entryTagsFollowTagsColumn() throws IOException {
+        Path taskPath = Util.getEntriesPath(EntryType.TASK);
+        Function<List<String>, TaskEntry> taskWithTags = taskTags -> new TaskEntry("Tagged", false, false, List.of(),
+                "", List.of(), taskTags, LocalDateTime.now(), LocalDateTime.now(), LocalDateTime.now(), List.of(),
+                task2UUID, taskPath);
+        var event = new EventEntry(eventUUID, "Tagged event", List.of("tagtest-shared"), LocalDateTime.now(),
+                LocalDateTime.now().plusHours(1), List.of(), null, false);
+
+        TaskEntry task = taskWithTags.apply(List.of("tagtest-shared", "TagTest-Old"));
+        task.flushToDisk();
+        db.upsertTask(task);
+        db.upsertEvent(event);
+        assertEquals(Set.of(task2UUID, eventUUID), db.getTaggedUUIDs("TAGTEST-SHARED"));
+        assertEquals(Set.of(task2UUID), db.getTaggedUUIDs("tagtest-old"));
+        assertEquals(List.of(task2UUID), db.getTasksByTag("tagtest-shared").stream().map(TaskEntry::uuid).toList());
+        assertEquals(List.of(eventUUID), db.getEventsByTag("tagtest-shared").stream().map(EventEntry::uuid).toList());
+        assertEquals(2, (int) db.getTagCounts().get("tagtest-shared"));
+
+        // Retagging replaces the rows, archived entries keep their tags but drop out of the entry queries
+        db.upsertTask(taskWithTags.apply(List.of("tagtest-new")));
+        assertTrue(db.getTaggedUUIDs("tagtest-old").isEmpty());
+        assertEquals(Set.of(task2UUID), db.getTaggedUUIDs("tagtest-new"));
+        db.archiveTask(task2UUID, true);
+        assertTrue(db.getTasksByTag("tagtest-new").isEmpty());
+
+        db.deleteTaskByUUID(task2UUID);
+        db.deleteEventByUUID(eventUUID);
+        assertTrue(db.getTaggedUUIDs("tagtest-new").isEmpty());
+        assertTrue(db.getTaggedUUIDs("tagtest-shared").isEmpty());
+    }
+
+    @Test
+    public void eventsMapFromBinaryColumns() throws IOException {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        List<Reminder> reminders = List.of(
+                new Reminder(start.minusHours(1), NotificationLevel.CRITICAL),
+                new Reminder(start.minusDays(1), NotificationLevel.LOW),
+                new Reminder(start.minusMinutes(5), NotificationLevel.NORMAL)
+        );
+        var event = new EventEntry(eventUUID, "Reminded event", tags, start, start.plusHours(1), reminders,
+                UUID.randomUUID(), false);
+        var plain = new EventEntry(UUID.randomUUID(), "Plain event", List.of(), start, start.plusHours(1), List.of(),
+                null, false);
+
+        db.upsertEvents(List.of(event, plain));
+        assertEquals(event, db.getEventByUUID(eventUUID));
+        assertEquals(plain, db.getEventByUUID(plain.uuid()));
+
+        var updated = event.updateBuilder();
+        updated.reminders = List.of(reminders.get(1));
+        db.upsertEvent(updated.build());
+        assertEquals(List.of(reminders.get(1)), db.getEventByUUID(eventUUID).reminders());
+        assertEquals(event.getStub().tags(), db.getEventStubByUUID(eventUUID).tags());
+
+        db.deleteEventByUUID(eventUUID);
+        db.deleteEventByUUID(plain.uuid());
+    }
+
+    @Test
+    public void eventWindowAndPastPages() throws IOException {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        Function<Integer, EventEntry> endingDaysAgo = days -> new EventEntry(UUID.randomUUID(), "Ended " + days,
+                List.of(), now.minusDays(days).minusHours(1), now.minusDays(days), List.of(), null, false);
+        List<EventEntry> old = IntStream.of(30, 20, 20, 12, 40).mapToObj(endingDaysAgo::apply).toList();
+        EventEntry recent = endingDaysAgo.apply(2);
+        EventEntry running = new EventEntry(UUID.randomUUID(), "Running", List.of(), now.minusDays(10), now.plusDays(1),
+                List.of(), null, false);
+        EventEntry soon = new EventEntry(UUID.randomUUID(), "Soon", List.of(), now.plusDays(3), now.plusDays(3).plusHours(1),
+                List.of(), null, false);
+        EventEntry later = new EventEntry(UUID.randomUUID(), "Later", List.of(), now.plusDays(60), now.plusDays(61),
+                List.of(), null, false);
+        EventEntry archived = endingDaysAgo.apply(1);
+        List<EventEntry> all = new ArrayList<>(old);
+        all.addAll(List.of(recent, running, soon, later, archived));
+        db.upsertEvents(all);
+        db.archiveEvent(archived.uuid(), true);
+        Set<UUID> uuids = all.stream().map(EventEntry::uuid).collect(Collectors.toSet());
+
+        long windowStart = DateTimeUtil.localToUnix(now.minusDays(7));
+        List<EventEntry> window = db.getEventsInWindow(windowStart, DateTimeUtil.localToUnix(now.plusDays(30)))
+                .stream().filter(e -> uuids.contains(e.uuid())).toList();
+        assertEquals(Set.of(recent, running, soon), Set.copyOf(window));
+
+        // Pages walk back from the window start, latest end first, ties broken by uuid
+        List<EventEntry> paged = new ArrayList<>();
+        long endTime = windowStart;
+        String cursor = "";
+        List<EventEntry> page;
+        while (!(page = db.getPastEventsPage(endTime, cursor, 2)).isEmpty()) {
+            assertTrue(page.size() <= 2);
+            paged.addAll(page);
+            endTime = DateTimeUtil.localToUnix(page.getLast().endTime());
+            cursor = page.getLast().uuid().toString();
+        }
+        List<EventEntry> expected = old.stream()
+                .sorted(Comparator.comparing(EventEntry::endTime).thenComparing(e -> e.uuid().toString()).reversed())
+                .toList();
+        assertEquals(expected, paged.stream().filter(e -> uuids.contains(e.uuid())).toList());
+
+        for (EventEntry event : all) {
+            db.deleteEventByUUID(event.uuid());
+        }
+    }
 }
@@ -0,0 +1,103 @@
+import io.mindspice.toastit.notification.NotificationScheduler;
+import io.mindspice.toastit.notification.ScheduledNotification;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+
+public class NotificationTests {
+    private final NotificationScheduler scheduler = new NotificationScheduler(Runnable::run);
+
+    @After
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void firesInDueOrder() throws InterruptedException {
+        List<Integer> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        LocalDateTime now = LocalDateTime.now();
+
+        scheduler.schedule(UUID.randomUUID(), now.plusNanos(300_000_000), () -> { fired.add(3); latch.countDown(); });
+        scheduler.schedule(UUID.randomUUID(), now.minusMinutes(1), () -> { fired.add(1); latch.countDown(); });
+        scheduler.schedule(UUID.randomUUID(), now.plusNanos(100_000_000), () -> { fired.add(2); latch.countDown(); });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3), fired);
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void cancelledNeverFire() throws InterruptedException {
+        UUID uuid = UUID.randomUUID();
+        List<String> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        LocalDateTime soon = LocalDateTime.now().plusNanos(200_000_000);
+
+        ScheduledNotification single = scheduler.schedule(UUID.randomUUID(), soon, () -> fired.add("single"));
+        scheduler.schedule(uuid, soon, () -> fired.add("entry 1"));
+        scheduler.schedule(uuid, soon.plusNanos(50_000_000), () -> fired.add("entry 2"));
+        scheduler.schedule(UUID.randomUUID(), soon.plusNanos(100_000_000), latch::countDown);
+
+        single.cancel();
+        assertTrue(single.isCancelled());
+        assertEquals(2, scheduler.cancelAll(uuid));
+        assertTrue(scheduler.getPending(uuid).isEmpty());
+        assertEquals(1, scheduler.size());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    public void cancelledHandlesArePurged() {
+        LocalDateTime later = LocalDateTime.now().plusDays(1);
+        List<ScheduledNotification> handles = IntStream.range(0, 1000)
+                .mapToObj(i -> scheduler.schedule(UUID.randomUUID(), later.plusMinutes(i), () -> { }))
+                .toList();
+
+        handles.subList(0, 900).forEach(ScheduledNotification::cancel);
+        assertEquals(100, scheduler.size());
+        assertTrue(scheduler.queueSize() < 1000);
+
+        ScheduledNotification moved = scheduler.reschedule(handles.get(950), later.minusHours(1));
+        assertTrue(handles.get(950).isCancelled());
+        assertTrue(moved.isPending());
+        assertEquals(100, scheduler.size());
+    }
+
+    @Test
+    public void resubmittedRemindersAreDeduplicated() {
+        LocalDateTime later = LocalDateTime.now().plusDays(1);
+        List<UUID> entries = IntStream.range(0, 100).mapToObj(i -> UUID.randomUUID()).toList();
+
+        // Simulates a week of refreshes re-submitting the same reminder set
+        for (int refresh = 0; refresh < 2000; ++refresh) {
+            for (UUID uuid : entries) {
+                scheduler.schedule(uuid, later, () -> { });
+                scheduler.schedule(uuid, later.plusHours(1), () -> { });
+            }
+        }
+
+        NotificationScheduler.Metrics metrics = scheduler.metrics();
+        assertEquals(200, metrics.pending());
+        assertEquals(200, metrics.queueDepth());
+        assertEquals(100, metrics.indexedEntries());
+        assertEquals(200, metrics.scheduled());
+        assertEquals(2000 * 200 - 200, metrics.deduplicated());
+
+        entries.forEach(scheduler::cancelAll);
+        assertEquals(0, scheduler.metrics().pending());
+        assertEquals(0, scheduler.metrics().indexedEntries());
+    }
+}
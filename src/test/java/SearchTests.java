@@ -0,0 +1,209 @@
+import io.mindspice.toastit.entries.SearchResult;
+import io.mindspice.toastit.entries.text.FileSearch;
+import io.mindspice.toastit.entries.text.SearchQuery;
+import io.mindspice.toastit.entries.text.SearchTask;
+import io.mindspice.toastit.entries.text.TextEntry;
+import io.mindspice.toastit.entries.text.TextIndex;
+import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.util.Settings;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+
+public class SearchTests {
+    private Path dir;
+
+    @Before
+    public void tempDir() throws IOException {
+        dir = Files.createTempDirectory("toastit-search");
+        dir.toFile().deleteOnExit();
+    }
+
+    private int created = 0;
+
+    private TextEntry textEntry(String name, String body) throws IOException {
+        // Results are in created order, a minute apart keeps it stable
+        var entry = new TextEntry(EntryType.NOTE, name, LocalDateTime.now().plusMinutes(created++), List.of(),
+                UUID.randomUUID(), dir);
+        Files.writeString(entry.getFilePath(), body);
+        return entry;
+    }
+
+    private static List<String> lines(List<SearchResult> results) {
+        return results.stream().map(SearchResult::matchedLine).toList();
+    }
+
+    @Test
+    public void invertedIndexWordPhraseAndPrefix() throws IOException {
+        TextEntry garden = textEntry("Garden", "Plant the tomato seedlings\nWater daily\nTomatoes: plant in May");
+        TextEntry kitchen = textEntry("Kitchen", "Seedlings of basil\nthe plant is doing well");
+        var index = new TextIndex();
+        index.build(List.of(garden, kitchen));
+        assertEquals(2, index.size());
+
+        assertEquals(List.of("Plant the tomato seedlings", "Tomatoes: plant in May", "the plant is doing well"),
+                lines(index.search("plant")));
+        assertEquals(List.of("Plant the tomato seedlings", "Tomatoes: plant in May"), lines(index.search("plant tomato*")));
+        assertEquals(List.of("Plant the tomato seedlings"), lines(index.search("\"plant the\"")));
+        assertEquals(List.of("Plant the tomato seedlings"), lines(index.search("\"the tom*\"")));
+        assertTrue(index.search("\"seedlings basil\"").isEmpty());
+        // Stops at the limit, including inside a file with several matching lines
+        assertEquals(List.of("Plant the tomato seedlings"), lines(index.search("plant", 1)));
+        assertEquals(List.of("Plant the tomato seedlings", "Tomatoes: plant in May"), lines(index.search("plant", 2)));
+        assertTrue(index.search("  ").isEmpty());
+    }
+
+    @Test
+    public void invertedIndexUpdatesIncrementally() throws IOException {
+        TextEntry note = textEntry("Note", "first draft");
+        var index = new TextIndex();
+        index.build(List.of(note));
+
+        Files.writeString(note.getFilePath(), "second revision");
+        index.update(note);
+        assertTrue(index.search("draft").isEmpty());
+        assertEquals(List.of("second revision"), lines(index.search("revision")));
+
+        TextEntry added = textEntry("Added", "another revision");
+        index.sync(List.of(added)); // note is gone from the list, so it is dropped
+        assertEquals(List.of("another revision"), lines(index.search("revision")));
+        assertEquals(1, index.size());
+
+        index.remove(added.uuid());
+        assertEquals(0, index.termCount());
+    }
+
+    @Test
+    public void fileSearchMatchesLinesOverBytes() throws IOException {
+        TextEntry entry = textEntry("Bytes", "alpha beta\r\ngamma\n\ncafé délice\nbeta again\nlast alpha");
+
+        assertEquals(List.of("alpha beta", "beta again"), lines(FileSearch.of("beta").search(List.of(entry), 10)));
+        assertEquals(List.of("café délice"), lines(FileSearch.of("é d").search(List.of(entry), 10)));
+        assertEquals(List.of("alpha beta", "gamma", "last alpha"),
+                lines(FileSearch.of(List.of("alpha", "gam")).search(List.of(entry), 10)));
+        assertEquals(List.of("alpha beta"), lines(FileSearch.of(List.of("alpha", "beta")).search(List.of(entry), 1)));
+        assertEquals(6, FileSearch.of("").search(List.of(entry), 10).size()); // Every line, like contains("")
+        assertTrue(FileSearch.of("delta").search(List.of(entry), 10).isEmpty());
+    }
+
+    @Test
+    public void fileSearchMapsLargeFilesAndStopsAtCap() throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 50_000; ++i) {
+            body.append("line ").append(i).append(i % 1000 == 0 ? " needle" : "").append('\n');
+        }
+        TextEntry large = textEntry("Large", body.toString());
+        assertTrue(Files.size(large.getFilePath()) > 256 * 1024);
+
+        FileSearch search = FileSearch.of("needle");
+        assertEquals(50, search.search(List.of(large), 1000).size());
+        List<SearchResult> capped = search.search(List.of(large, large), 3);
+        assertEquals(List.of("line 0 needle", "line 1000 needle", "line 2000 needle"), lines(capped));
+    }
+
+    @Test
+    public void searchTaskStreamsResultsInEntryOrder() throws IOException {
+        Settings.THREADED_SEARCH = true;
+        Settings.SEARCH_CONCURRENCY = 4;
+        Settings.SEARCH_TIMEOUT_SEC = 30;
+        Settings.SEARCH_MAX_RESULTS = 1000;
+        List<TextEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 40; ++i) {
+            entries.add(textEntry("Entry " + i, "filler\nneedle " + i + "\nfiller"));
+        }
+
+        AtomicInteger streamed = new AtomicInteger();
+        SearchTask task = SearchTask.start(FileSearch.of("needle"), entries, result -> streamed.incrementAndGet());
+        List<SearchResult> results = task.await();
+        assertTrue(task.isDone());
+        assertFalse(task.isTimedOut());
+        assertEquals(40, streamed.get());
+        assertEquals(IntStream.range(0, 40).mapToObj(i -> "needle " + i).toList(), lines(results));
+
+        Settings.SEARCH_MAX_RESULTS = 5;
+        assertEquals(5, SearchTask.start(FileSearch.of("needle"), entries, result -> { }).await().size());
+    }
+
+    @Test
+    public void searchTaskStopsOnCancel() throws IOException {
+        Settings.THREADED_SEARCH = true;
+        Settings.SEARCH_CONCURRENCY = 2;
+        Settings.SEARCH_TIMEOUT_SEC = 30;
+        Settings.SEARCH_MAX_RESULTS = 1000;
+        List<TextEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            entries.add(textEntry("Entry " + i, "needle"));
+        }
+
+        AtomicReference<SearchTask> task = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(1);
+        task.set(SearchTask.start(FileSearch.of("needle"), entries, result -> {
+            try {
+                started.await(); // Hold the workers until cancel is wired up
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            task.get().cancel();
+        }));
+        started.countDown();
+        List<SearchResult> results = task.get().await();
+        assertTrue(task.get().isCancelled());
+        assertTrue(results.size() <= Settings.SEARCH_CONCURRENCY);
+        assertTrue(task.get().filesSearched() < entries.size());
+    }
+
+    @Test
+    public void searchQueryParsesAndFiltersLines() throws IOException {
+        SearchQuery query = SearchQuery.parse("tag:garden after:2024-03-01 before:2024-04-01 plant \"the tomato\" /seed\\w+/");
+        assertEquals(List.of("plant"), query.terms());
+        assertEquals(List.of("the tomato"), query.phrases());
+        assertEquals(List.of("garden"), query.tags());
+        assertEquals(LocalDateTime.of(2024, 3, 1, 0, 0), query.after());
+        assertEquals(LocalDateTime.of(2024, 4, 1, 0, 0), query.before());
+        assertTrue(query.hasMetadataFilter());
+        assertFalse(query.isWordsOnly());
+
+        TextEntry garden = textEntry("Garden", "Plant the tomato seedlings\nplant the tomato seedlings\nplant the tomato\nWater daily");
+        assertEquals(List.of("plant the tomato seedlings"), lines(query.fileSearch().search(List.of(garden), 10)));
+        assertEquals(List.of("Plant the tomato seedlings", "Water daily"),
+                lines(SearchQuery.parse("re:^[A-Z]").fileSearch().search(List.of(garden), 10)));
+        assertFalse(query.matchesMetadata(garden)); // No tags, created now
+
+        SearchQuery words = SearchQuery.parse("  plant  tomato ");
+        assertTrue(words.isWordsOnly() && !words.hasMetadataFilter());
+        assertFalse(SearchQuery.parse("tag:garden").hasTextFilter());
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("\"unclosed"));
+    }
+
+    @Test
+    public void searchQueryFallsBackToLiteralInput() throws IOException {
+        SearchQuery quote = SearchQuery.parseOrLiteral("\"");
+        assertEquals(List.of("\""), quote.terms());
+        assertTrue(quote.isWordsOnly() && !quote.hasMetadataFilter());
+
+        SearchQuery path = SearchQuery.parseOrLiteral("/usr/bin");
+        assertEquals(List.of("/usr/bin"), path.terms());
+        assertTrue(path.patterns().isEmpty());
+        assertEquals(List.of("seed\\w+"), SearchQuery.parse("/seed\\w+/ plant").patterns().stream().map(Pattern::pattern).toList());
+        assertEquals(List.of("re:[unclosed"), SearchQuery.parseOrLiteral("re:[unclosed").terms());
+
+        TextEntry shell = textEntry("Shell", "Run \"ls\" in /usr/bin\nnothing here");
+        assertEquals(List.of("Run \"ls\" in /usr/bin"), lines(quote.fileSearch().search(List.of(shell), 10)));
+        assertEquals(List.of("Run \"ls\" in /usr/bin"), lines(path.fileSearch().search(List.of(shell), 10)));
+    }
+}
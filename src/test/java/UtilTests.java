@@ -1,7 +1,24 @@
 import io.mindspice.toastit.App;
 import io.mindspice.toastit.sqlite.DBConnection;
+import io.mindspice.toastit.util.BinaryCodec;
 import io.mindspice.toastit.util.DateTimeUtil;
+import io.mindspice.toastit.util.DurableWriter;
+import io.mindspice.toastit.util.EntryFiles;
+import io.mindspice.toastit.util.JSON;
 import io.mindspice.toastit.util.Settings;
+import io.mindspice.toastit.calendar.CalendarIndex;
+import io.mindspice.toastit.entries.CalendarEvents;
+import io.mindspice.toastit.entries.EntryStore;
+import io.mindspice.toastit.entries.WriteBehind;
+import io.mindspice.toastit.entries.event.EventEntry;
+import io.mindspice.toastit.entries.project.ProjectEntry;
+import io.mindspice.toastit.entries.task.SubTask;
+import io.mindspice.toastit.entries.task.TaskEntry;
+import io.mindspice.toastit.entries.text.TextEntry;
+import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.enums.FsyncPolicy;
+import io.mindspice.toastit.enums.NotificationLevel;
+import io.mindspice.toastit.notification.Reminder;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -9,7 +26,21 @@ import org.junit.Test;
 import io.mindspice.toastit.util.Util;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.*;
 
@@ -58,4 +89,253 @@ public class UtilTests {
 
 
     }
+
+    @Test
+    public void entryStoreOrdersAndReplacesByUUID() {
+        EntryStore<TextEntry> store = new EntryStore<>(TextEntry::createdAt);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 12, 0);
+        UUID uuid = UUID.randomUUID();
+
+        store.add(new TextEntry(EntryType.NOTE, "Second", base.plusDays(1), List.of(), uuid, Path.of("/tmp")));
+        store.add(new TextEntry(EntryType.NOTE, "First", base, List.of(), UUID.randomUUID(), Path.of("/tmp")));
+        store.add(new TextEntry(EntryType.NOTE, "Third", base.plusDays(2), List.of(), UUID.randomUUID(), Path.of("/tmp")));
+        assertEquals(List.of("First", "Second", "Third"), store.stream().map(TextEntry::name).toList());
+
+        // Same uuid replaces in place and moves to its new position
+        store.put(new TextEntry(EntryType.NOTE, "Last", base.plusDays(3), List.of(), uuid, Path.of("/tmp")));
+        assertEquals(3, store.size());
+        assertEquals("Last", store.get(2).name());
+        assertEquals("Last", store.get(uuid).name());
+
+        assertEquals(List.of("First", "Third"),
+                store.between(base, base.plusDays(3)).stream().map(TextEntry::name).toList());
+
+        // A snapshot keeps its size and indexes across later writes
+        List<TextEntry> snapshot = store.snapshotList();
+        assertNotNull(store.remove(uuid));
+        assertFalse(store.containsUUID(uuid));
+        assertEquals(2, store.size());
+        assertEquals(3, snapshot.size());
+        assertEquals("Last", snapshot.get(2).name());
+        assertEquals(2, store.toArray().length);
+    }
+
+    @Test
+    public void entryStoreOverlapMatchesScan() {
+        EntryStore<EventEntry> store = new EntryStore<>(EventEntry::startTime, EventEntry::endTime);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        Random random = new Random(42);
+        for (int i = 0; i < 500; ++i) {
+            LocalDateTime start = base.plusHours(random.nextInt(24 * 60));
+            // Mostly short events, some spanning weeks and some zero length
+            LocalDateTime end = start.plusHours(i % 10 == 0 ? random.nextInt(24 * 21) : random.nextInt(4));
+            store.add(new EventEntry(UUID.randomUUID(), "Event " + i, List.of(), start, end, List.of(), null, false));
+        }
+
+        for (int i = 0; i < 200; ++i) {
+            LocalDateTime from = base.plusHours(random.nextInt(24 * 62) - 24);
+            LocalDateTime to = from.plusHours(random.nextInt(72));
+            List<EventEntry> expected = store.stream()
+                    .filter(e -> e.startTime().isBefore(to))
+                    .filter(e -> e.endTime().isAfter(from) || !e.startTime().isBefore(from))
+                    .toList();
+            assertEquals(from + " - " + to, expected, store.overlapping(from, to));
+        }
+
+        // Writes rebuild the tree on the next query
+        EventEntry added = new EventEntry(UUID.randomUUID(), "Added", List.of(), base.minusDays(1), base.plusYears(1),
+                List.of(), null, false);
+        store.add(added);
+        assertTrue(store.overlapping(base.plusMonths(6), base.plusMonths(7)).contains(added));
+        store.remove(added.uuid());
+        assertFalse(store.overlapping(base.plusMonths(6), base.plusMonths(7)).contains(added));
+    }
+
+    @Test
+    public void calendarIndexLoadsMonthOnce() {
+        LocalDateTime base = LocalDateTime.of(2024, 3, 1, 9, 0);
+        List<EventEntry> events = new ArrayList<>(IntStream.range(0, 40)
+                .mapToObj(i -> new EventEntry(UUID.randomUUID(), "Event " + i, List.of(), base.plusHours(i * 20L),
+                        base.plusHours(i * 20L + 1), List.of(), null, false))
+                .toList());
+        int[] loads = {0};
+        long[] version = {0};
+        CalendarEvents source = new CalendarEvents() {
+            @Override
+            public List<EventEntry> getCalendarEntries(LocalDate from, LocalDate to) {
+                loads[0]++;
+                return events.stream()
+                        .filter(e -> !e.startTime().toLocalDate().isBefore(from) && e.startTime().toLocalDate().isBefore(to))
+                        .toList();
+            }
+
+            @Override
+            public long calendarVersion() {
+                return version[0];
+            }
+        };
+        CalendarIndex index = new CalendarIndex(List.of(source));
+
+        YearMonth march = YearMonth.of(2024, 3);
+        for (int day = 1; day <= march.lengthOfMonth(); ++day) {
+            LocalDate date = march.atDay(day);
+            assertEquals(source.getCalendarEntries(date, date.plusDays(1)), index.entriesOn(date));
+        }
+        loads[0] = 0;
+        march.atDay(1).datesUntil(march.plusMonths(1).atDay(1)).forEach(index::entriesOn);
+        assertEquals(0, loads[0]);
+
+        // A version change or another month rebuilds, unchanged lookups don't
+        events.add(new EventEntry(UUID.randomUUID(), "Added", List.of(), base.plusDays(3), base.plusDays(3), List.of(),
+                null, false));
+        assertFalse(index.entriesOn(march.atDay(4)).stream().anyMatch(e -> e.name().equals("Added")));
+        version[0]++;
+        assertTrue(index.entriesOn(march.atDay(4)).stream().anyMatch(e -> e.name().equals("Added")));
+        assertEquals(1, loads[0]);
+        index.entriesOn(LocalDate.of(2024, 4, 2));
+        index.entriesOn(LocalDate.of(2024, 4, 20));
+        assertEquals(2, loads[0]);
+    }
+
+    @Test
+    public void writeBehindCoalescesAndRetries() throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        UUID uuid = UUID.randomUUID();
+        List<List<String>> batches = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        boolean[] failSql = {true};
+        boolean[] failFile = {false};
+        WriteBehind<TextEntry> writes = new WriteBehind<>(
+                entries -> {
+                    if (failSql[0]) { throw new IOException("Database unavailable"); }
+                    // Files are written before the rows
+                    assertTrue(files.containsAll(entries.stream().map(TextEntry::name).toList()));
+                    batches.add(entries.stream().map(TextEntry::name).toList());
+                },
+                entry -> {
+                    if (failFile[0]) { throw new IllegalStateException("Disk full"); }
+                    files.add(entry.name());
+                }
+        );
+
+        writes.put(new TextEntry(EntryType.NOTE, "First", now, List.of(), uuid, Path.of("/tmp")));
+        writes.put(new TextEntry(EntryType.NOTE, "Other", now, List.of(), UUID.randomUUID(), Path.of("/tmp")));
+        assertThrows(IOException.class, writes::flush);
+        assertEquals(2, writes.depth());
+        assertEquals(List.of("First", "Other"), files);
+
+        // A failed file write never reaches the database
+        failSql[0] = false;
+        failFile[0] = true;
+        assertThrows(IOException.class, writes::flush);
+        assertTrue(batches.isEmpty());
+        failFile[0] = false;
+        files.clear();
+
+        // A save made after the failure wins over the requeued one
+        writes.put(new TextEntry(EntryType.NOTE, "Second", now, List.of(), uuid, Path.of("/tmp")));
+        writes.flush();
+        assertEquals(List.of(List.of("Second", "Other")), batches);
+        assertEquals(List.of("Second", "Other"), files);
+        assertEquals(0, writes.depth());
+
+        writes.put(new TextEntry(EntryType.NOTE, "Deleted", now, List.of(), uuid, Path.of("/tmp")));
+        writes.discard(uuid);
+        writes.flush();
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void durableWriterReplacesWholeFiles() throws IOException {
+        Path dir = Files.createTempDirectory("toastit-durable");
+        Path target = dir.resolve("entry.task");
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            DurableWriter.write(target, ("written with " + policy).getBytes(), policy);
+            assertEquals("written with " + policy, Files.readString(target));
+        }
+
+        // A failed replace leaves the old content and no temp file behind
+        Path occupied = dir.resolve("occupied");
+        Files.createDirectories(occupied.resolve("child"));
+        assertThrows(IOException.class, () -> DurableWriter.write(occupied, "lost".getBytes(), FsyncPolicy.FILE));
+        assertTrue(Files.isDirectory(occupied.resolve("child")));
+        try (var files = Files.list(dir)) {
+            assertEquals(List.of("entry.task", "occupied"), files.map(f -> f.getFileName().toString()).sorted().toList());
+        }
+
+        // A rewrite keeps the replaced file's permissions
+        if (Files.getFileStore(dir).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            Set<PosixFilePermission> shared = PosixFilePermissions.fromString("rw-rw-r--");
+            Files.setPosixFilePermissions(target, shared);
+            DurableWriter.write(target, "rewritten".getBytes(), FsyncPolicy.FILE);
+            assertEquals(shared, Files.getPosixFilePermissions(target));
+        }
+
+        // Temp files of writes that never finished are removed once they are old enough to not be in progress
+        Path orphan = dir.resolve(".entry.task.abc123.tmp");
+        Path recent = dir.resolve(".entry.task.def456.tmp");
+        Files.writeString(orphan, "partial");
+        Files.writeString(recent, "partial");
+        Files.setLastModifiedTime(orphan, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+        assertEquals(1, DurableWriter.removeOrphanedTempFiles(dir));
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(recent) && Files.exists(target));
+    }
+
+    @Test
+    public void binaryCodecRoundTripsAndReadsJson() throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        Path base = Path.of("/tmp");
+        var task = new TaskEntry("Codec task", true, false,
+                List.of(new SubTask("Sub", "Sub description", true, now), new SubTask("Sub 2", "", false, now)),
+                "Description ✓", List.of("note 1", "note 2"), List.of("tag1"), now.plusDays(1), now, DateTimeUtil.MAX,
+                List.of(new Reminder(now.minusDays(1), NotificationLevel.CRITICAL)), UUID.randomUUID(), base);
+        var project = new ProjectEntry("Codec project", true, false, List.of(), null, "", List.of("note"),
+                List.of("tag1", "tag2"), Path.of("/home"), now, now, now, List.of(), UUID.randomUUID(), base, "code");
+        var text = new TextEntry(EntryType.JOURNAL, "Codec journal", now, List.of("tag"), UUID.randomUUID(), base);
+
+        for (Object entry : List.of(task, project, text)) {
+            byte[] binary = EntryFiles.BINARY_CODEC.encode(entry);
+            byte[] json = EntryFiles.JSON_CODEC.encode(entry);
+            assertTrue(binary.length < json.length);
+            assertEquals(entry, EntryFiles.decode(binary, entry.getClass()));
+            assertEquals(entry, EntryFiles.decode(json, entry.getClass()));
+        }
+
+        // Fields added by a later version are skipped, files from a newer format version are refused
+        byte[] binary = EntryFiles.BINARY_CODEC.encode(task);
+        byte[] extended = Arrays.copyOf(binary, binary.length + 4);
+        System.arraycopy(new byte[]{15 << 3 | 2, 2, 'o', 'k'}, 0, extended, binary.length, 4);
+        assertEquals(task, EntryFiles.decode(extended, TaskEntry.class));
+        binary[4] = 2;
+        assertThrows(IOException.class, () -> EntryFiles.decode(binary, TaskEntry.class));
+        assertThrows(IOException.class, () -> EntryFiles.decode(EntryFiles.BINARY_CODEC.encode(text), TaskEntry.class));
+
+        // A level this version doesn't know reads as the default instead of failing the entry
+        LocalDateTime at = LocalDateTime.of(2024, 3, 1, 9, 30);
+        byte[] reminder = BinaryCodec.encodeReminders(List.of(new Reminder(at, NotificationLevel.LOW)));
+        String encoded = new String(reminder, StandardCharsets.ISO_8859_1);
+        byte[] unknown = encoded.replace("LOW", "MID").getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals(List.of(new Reminder(at, NotificationLevel.NORMAL)), BinaryCodec.decodeReminders(unknown));
+    }
+
+    @Test
+    public void jsonArrayFastPathsMatchDatabind() {
+        assertEquals(List.of("tag", "with \"quotes\"", "ünïcode"),
+                JSON.jsonArrayToStringList("[\"tag\", \"with \\\"quotes\\\"\", \"ünïcode\"]"));
+        assertEquals(List.of(), JSON.jsonArrayToStringList("[]"));
+        assertEquals(List.of("a", "1"), JSON.jsonArrayToStringList("[\"a\", 1]")); // Databind fallback coerces
+        assertEquals(List.of(), JSON.jsonArrayToStringList("[\"broken\""));
+        assertEquals(List.of(1L, 2L), JSON.arrayStringToEpochList("[1, 2]"));
+
+        var reminders = List.of(
+                new Reminder(LocalDateTime.now(), NotificationLevel.CRITICAL),
+                new Reminder(LocalDateTime.now().plusDays(1), NotificationLevel.LOW)
+        );
+        String json = "[{\"time\":%d,\"level\":\"CRITICAL\",\"extra\":{\"a\":[1]}},{\"level\":\"LOW\",\"time\":%d}]"
+                .formatted(reminders.get(0).getStub().time(), reminders.get(1).getStub().time());
+        assertEquals(reminders, JSON.jsonArrayToReminderList(json));
+        // An unknown level is left to databind, which rejects it the same way
+        assertEquals(List.of(), JSON.jsonArrayToReminderList("[{\"time\":1,\"level\":\"MID\"}]"));
+    }
 }